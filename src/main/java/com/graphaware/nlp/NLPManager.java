@@ -15,17 +15,26 @@
  */
 package com.graphaware.nlp;
 
+import com.google.common.collect.Iterators;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.graphaware.common.log.LoggerFactory;
 import com.graphaware.nlp.annotation.NLPModuleExtension;
 import com.graphaware.nlp.configuration.DynamicConfiguration;
 import com.graphaware.nlp.configuration.SettingsConstants;
 import com.graphaware.nlp.domain.AnnotatedText;
+import com.graphaware.nlp.domain.Sentence;
+import com.graphaware.nlp.domain.Tag;
 import com.graphaware.nlp.domain.VectorContainer;
+import com.graphaware.nlp.dsl.request.AnnotationBatchRequest;
 import com.graphaware.nlp.dsl.request.AnnotationRequest;
 import com.graphaware.nlp.dsl.request.ComputeVectorRequest;
 import com.graphaware.nlp.dsl.request.FilterRequest;
 import com.graphaware.nlp.dsl.request.CustomModelsRequest;
 import com.graphaware.nlp.dsl.request.PipelineSpecification;
+import com.graphaware.nlp.dsl.result.AnnotationQueueStatus;
+import com.graphaware.nlp.dsl.result.BatchResult;
+import com.graphaware.nlp.dsl.result.PipelineStats;
+import com.graphaware.nlp.dsl.result.ProcessorStatus;
 import com.graphaware.nlp.dsl.result.ProcessorsList;
 import com.graphaware.nlp.enrich.Enricher;
 import com.graphaware.nlp.enrich.EnrichmentRegistry;
@@ -34,28 +43,60 @@ import com.graphaware.nlp.enrich.microsoft.MicrosoftConceptEnricher;
 import com.graphaware.nlp.event.EventDispatcher;
 import com.graphaware.nlp.event.TextAnnotationEvent;
 import com.graphaware.nlp.extension.NLPExtension;
+import com.graphaware.nlp.language.LanguageDetectionResult;
 import com.graphaware.nlp.language.LanguageManager;
 import com.graphaware.nlp.module.NLPConfiguration;
+import com.graphaware.nlp.persistence.LazyAnnotatedText;
+import com.graphaware.nlp.persistence.LazySentence;
+import com.graphaware.nlp.persistence.NodeIdCache;
 import com.graphaware.nlp.persistence.PersistenceRegistry;
+import com.graphaware.nlp.persistence.SchemaManager;
 import com.graphaware.nlp.persistence.constants.Properties;
+import com.graphaware.nlp.persistence.persisters.AnnotatedTextPersister;
 import com.graphaware.nlp.persistence.persisters.Persister;
+import com.graphaware.nlp.persistence.persisters.SentencePersister;
+import com.graphaware.nlp.persistence.persisters.TagPersister;
+import com.graphaware.nlp.processor.AnnotationCache;
 import com.graphaware.nlp.processor.PipelineInfo;
 import com.graphaware.nlp.processor.TextProcessor;
 import com.graphaware.nlp.processor.TextProcessorsManager;
+import com.graphaware.nlp.processor.batch.BatchExecutor;
+import com.graphaware.nlp.processor.chunk.TextChunk;
+import com.graphaware.nlp.processor.chunk.TextChunker;
+import com.graphaware.nlp.processor.queue.AnnotationJob;
+import com.graphaware.nlp.processor.queue.AnnotationQueue;
 import com.graphaware.nlp.util.ProcessorUtils;
 import com.graphaware.nlp.util.ServiceLoader;
 import com.graphaware.nlp.vector.QueryBasedVectorComputation;
 import com.graphaware.nlp.vector.SparseVector;
 import org.neo4j.graphdb.GraphDatabaseService;
 import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Transaction;
 import org.neo4j.logging.Log;
 
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
 
 public final class NLPManager {
 
     private static final Log LOG = LoggerFactory.getLogger(NLPManager.class);
 
+    private static final int DEFAULT_ASYNC_ANNOTATION_WORKERS = 2;
+
+    private static final int DEFAULT_ASYNC_ANNOTATION_QUEUE_SIZE = 10000;
+
+    private static final long DEFAULT_ANNOTATION_CACHE_SIZE = 5_000_000L;
+
+    private static final int DEFAULT_PARALLEL_ANNOTATION_THREADS = 4;
+
+    private static final int MIN_PARALLEL_CHUNK_SIZE = 1000;
+
     private static NLPManager instance = null;
 
     private NLPConfiguration nlpConfiguration;
@@ -68,14 +109,29 @@ public final class NLPManager {
 
     private PersistenceRegistry persistenceRegistry;
 
+    private SchemaManager schemaManager;
+
     private EnrichmentRegistry enrichmentRegistry;
     
     private QueryBasedVectorComputation vectorComputation;
 
-    private final Map<Class, NLPExtension> extensions = new HashMap<>();
+    private final Map<Class, NLPExtension> extensions = new LinkedHashMap<>();
 
     private EventDispatcher eventDispatcher;
 
+    private volatile AnnotationQueue annotationQueue;
+
+    private volatile AnnotationCache annotationCache;
+
+    /**
+     * Waits on the pipeline executors for the chunks of parallel annotations, threads are reused
+     * across requests and the annotation concurrency stays bounded by the pipeline executors.
+     */
+    private final ExecutorService chunkExecutor = Executors.newCachedThreadPool(new ThreadFactoryBuilder()
+            .setDaemon(true)
+            .setNameFormat("nlp-parallel-annotation-%d")
+            .build());
+
     private boolean initialized = false;
 
     private NLPManager() {
@@ -101,8 +157,12 @@ public final class NLPManager {
         this.nlpConfiguration = nlpConfiguration;
         this.configuration = new DynamicConfiguration(database);
         this.textProcessorsManager = new TextProcessorsManager();
+        this.textProcessorsManager.setProcessorPoolSize(this::getProcessorPoolSize);
+        this.configuration.addListener(snapshot -> textProcessorsManager.resetUnpooledPipelines());
         this.database = database;
         this.persistenceRegistry = new PersistenceRegistry(database, configuration);
+        this.schemaManager = new SchemaManager(database, configuration);
+        this.schemaManager.ensureSchemaAsync();
         this.enrichmentRegistry = buildAndRegisterEnrichers();
         this.eventDispatcher = new EventDispatcher();
         this.vectorComputation = new QueryBasedVectorComputation(database);
@@ -110,6 +170,45 @@ public final class NLPManager {
         registerEventListeners();
         initialized = true;
         registerPipelinesFromConfig();
+        warmupProcessors(nlpConfiguration.getWarmupProcessors());
+    }
+
+    /**
+     * Starts the background initialisation of the configured processors, an empty list for all of them.
+     * Unknown names are skipped, nothing is loaded when none of the names is known.
+     */
+    private void warmupProcessors(List<String> names) {
+        if (names == null) {
+            return;
+        }
+        if (names.isEmpty()) {
+            textProcessorsManager.warmup(names);
+            return;
+        }
+        Map<Boolean, List<String>> known = names.stream()
+                .collect(Collectors.partitioningBy(name -> textProcessorsManager.getTextProcessorNames().contains(name)));
+        if (!known.get(false).isEmpty()) {
+            LOG.warn("Unknown text processors " + known.get(false) + " in the warm-up configuration are skipped");
+        }
+        if (!known.get(true).isEmpty()) {
+            textProcessorsManager.warmup(known.get(true));
+        }
+    }
+
+    /**
+     * Applies the pending background work and stops the background threads, called on module shutdown
+     * while the database is still available.
+     */
+    public void shutdown() {
+        if (!initialized) {
+            return;
+        }
+        if (annotationQueue != null) {
+            annotationQueue.shutdown();
+        }
+        ((TagPersister) getPersister(Tag.class)).getTagMerger().shutdown();
+        configuration.shutdown();
+        chunkExecutor.shutdownNow();
     }
 
     public TextProcessorsManager getTextProcessorsManager() {
@@ -120,51 +219,375 @@ public final class NLPManager {
         return (T) persistenceRegistry.getPersister(clazz);
     }
 
+    public SchemaManager getSchemaManager() {
+        return schemaManager;
+    }
+
+    public NodeIdCache getNodeIdCache() {
+        return persistenceRegistry.getNodeIdCache();
+    }
+
     public GraphDatabaseService getDatabase() {
         return database;
     }
 
     public Node annotateTextAndPersist(AnnotationRequest annotationRequest) {
+        if (annotationRequest.getChunkSize() > 0) {
+            return annotateTextInChunksAndPersist(annotationRequest);
+        }
+        if (annotationRequest.isParallel()) {
+            return annotateTextInParallelAndPersist(annotationRequest);
+        }
+
         return annotateTextAndPersist(annotationRequest.getText(), annotationRequest.getId(), annotationRequest.getTextProcessor(),
                 annotationRequest.getPipeline(), annotationRequest.isForce(), annotationRequest.shouldCheckLanguage());
     }
 
     public Node annotateTextAndPersist(String text, String id, String textProcessor, String pipelineName, boolean force, boolean checkForLanguage) {
+        if (!force) {
+            Node existing = getUnchangedAnnotatedText(id, text, textProcessor, pipelineName);
+            if (existing != null) {
+                LOG.info("Text " + id + " has not changed since its last annotation, skipping");
+                return existing;
+            }
+        }
+        AnnotatedText annotatedText = annotateText(text, textProcessor, pipelineName, checkForLanguage);
+
+        return processAnnotationPersist(id, text, annotatedText);
+    }
+
+    public Node annotateTextInParallelAndPersist(AnnotationRequest request) {
+        if (!request.isForce()) {
+            Node existing = getUnchangedAnnotatedText(request.getId(), request.getText(), request.getTextProcessor(), request.getPipeline());
+            if (existing != null) {
+                LOG.info("Text " + request.getId() + " has not changed since its last annotation, skipping");
+                return existing;
+            }
+        }
+        AnnotatedText annotatedText = annotateTextInParallel(request.getText(), request.getTextProcessor(), request.getPipeline(), request.shouldCheckLanguage());
+
+        return processAnnotationPersist(request.getId(), request.getText(), annotatedText);
+    }
+
+    public AnnotatedText annotateText(String text, String textProcessor, String pipelineName, boolean checkForLanguage) {
         String lang = checkTextLanguage(text, checkForLanguage);
-        String pipeline = null;
-        TextProcessor processor = null;
+
+        return annotateText(text, textProcessor, pipelineName, lang);
+    }
+
+    private AnnotatedText annotateText(String text, String textProcessor, String pipelineName, String lang) {
+        return getAnnotator(textProcessor, pipelineName, lang).apply(text);
+    }
+
+    /**
+     * Resolves the text processor and pipeline once, the returned function can then be applied
+     * from any thread without a transaction.
+     */
+    private Function<String, AnnotatedText> getAnnotator(String textProcessor, String pipelineName, String lang) {
+        String pipeline;
+        TextProcessor processor;
         try {
             pipeline = getPipeline(pipelineName);
             processor = textProcessorsManager.retrieveTextProcessor(textProcessor, pipeline);
         } catch (Exception e) {
-            pipeline = pipelineName;
             PipelineSpecification pipelineSpecification = getConfiguration().loadPipeline(pipelineName);
-            processor = textProcessorsManager.getTextProcessor(pipelineSpecification.getTextProcessor());
-            AnnotatedText at = processor.annotateText(text, lang, pipelineSpecification);
+            TextProcessor specificationProcessor = textProcessorsManager.getTextProcessor(pipelineSpecification.getTextProcessor());
 
-            return processAnnotationPersist(id, text, at);
+            return text -> {
+                AnnotatedText annotatedText = textProcessorsManager.execute(specificationProcessor, pipelineSpecification.getName(),
+                        instance -> instance.annotateText(text, lang, pipelineSpecification));
+                annotatedText.setPipeline(pipelineSpecification.getName());
+                annotatedText.setTextProcessor(specificationProcessor.getClass().getName());
+
+                return annotatedText;
+            };
         }
 
-        AnnotatedText annotatedText = processor.annotateText(
-                text, pipeline, lang, null
-        );
+        return text -> {
+            AnnotatedText annotatedText = textProcessorsManager.execute(processor, pipeline, instance -> instance.annotateText(text, pipeline, lang, null));
+            annotatedText.setPipeline(pipeline);
+            annotatedText.setTextProcessor(processor.getClass().getName());
 
-        return processAnnotationPersist(id, text, annotatedText);
+            return annotatedText;
+        };
+    }
+
+    /**
+     * Splits the text at paragraph boundaries in as many chunks as the pipeline has threads, annotates
+     * the chunks concurrently and merges them back in a single annotation, with sentence numbers
+     * and occurrence spans relative to the whole text.
+     */
+    public AnnotatedText annotateTextInParallel(String text, String textProcessor, String pipelineName, boolean checkForLanguage) {
+        String lang = checkTextLanguage(text, checkForLanguage);
+        Function<String, AnnotatedText> annotator = getAnnotator(textProcessor, pipelineName, lang);
+        int threads = getPipelineThreadNumber(textProcessor, getPipeline(pipelineName));
+        int chunkSize = Math.max(MIN_PARALLEL_CHUNK_SIZE, (text.length() + threads - 1) / threads);
+        List<TextChunk> chunks = TextChunker.split(text, chunkSize);
+        if (chunks.size() < 2) {
+            return annotator.apply(text);
+        }
+        List<Future<AnnotatedText>> annotatedChunks = new ArrayList<>();
+        try {
+            chunks.forEach(chunk -> annotatedChunks.add(chunkExecutor.submit(() -> annotator.apply(chunk.getText()))));
+            AnnotatedText merged = new AnnotatedText();
+            int sentenceOffset = 0;
+            for (int i = 0; i < chunks.size(); ++i) {
+                AnnotatedText annotatedChunk = annotatedChunks.get(i).get().shift(sentenceOffset, chunks.get(i).getOffset());
+                annotatedChunk.getSentences().forEach(merged::addSentence);
+                merged.setPipeline(annotatedChunk.getPipeline());
+                merged.setTextProcessor(annotatedChunk.getTextProcessor());
+                sentenceOffset += annotatedChunk.getSentences().size();
+            }
+            LOG.info("Annotated " + chunks.size() + " chunks on " + Math.min(threads, chunks.size()) + " threads");
+
+            return merged;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while annotating text", e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Error while annotating a chunk of text", e.getCause());
+        } finally {
+            annotatedChunks.forEach(annotatedChunk -> annotatedChunk.cancel(true));
+        }
+    }
+
+    private int getPipelineThreadNumber(String textProcessor, String pipeline) {
+        PipelineSpecification pipelineSpecification = configuration.loadPipeline(pipeline);
+        if (pipelineSpecification != null && pipelineSpecification.getThreadNumber() > 0) {
+            return (int) pipelineSpecification.getThreadNumber();
+        }
+        try {
+            return textProcessorsManager.retrieveTextProcessor(textProcessor, pipeline).getPipelineInfos().stream()
+                    .filter(pipelineInfo -> pipelineInfo.getName().equals(pipeline) && pipelineInfo.getNumberOfThreads() > 0)
+                    .map(pipelineInfo -> (int) pipelineInfo.getNumberOfThreads())
+                    .findFirst()
+                    .orElse(DEFAULT_PARALLEL_ANNOTATION_THREADS);
+        } catch (Exception e) {
+            return DEFAULT_PARALLEL_ANNOTATION_THREADS;
+        }
+    }
+
+    /**
+     * Annotates and stores a large text chunk by chunk, each chunk being committed in its own
+     * transaction before the next one is annotated, so that memory and locks are bounded by the
+     * chunk size. Chunks are written from a separate thread, as transactions cannot be nested.
+     * When a chunk fails, the chunks stored before it stay committed. As every write happens on the
+     * writer thread, this must not be called from within a write transaction, whose locks the writer
+     * could wait for.
+     */
+    public Node annotateTextInChunksAndPersist(AnnotationRequest request) {
+        String id = request.getId();
+        String text = request.getText();
+        if (!request.isForce()) {
+            Node existing = getUnchangedAnnotatedText(id, text, request.getTextProcessor(), request.getPipeline());
+            if (existing != null) {
+                LOG.info("Text " + id + " has not changed since its last annotation, skipping");
+                return existing;
+            }
+        }
+        List<TextChunk> chunks = TextChunker.split(text, request.getChunkSize());
+        String lang = checkTextLanguage(text, request.shouldCheckLanguage());
+        Function<String, AnnotatedText> annotator = getAnnotator(request.getTextProcessor(), request.getPipeline(), lang);
+        String txId = String.valueOf(System.currentTimeMillis());
+        AnnotatedTextPersister persister = getPersister(AnnotatedText.class);
+        ExecutorService writer = Executors.newSingleThreadExecutor();
+        try {
+            if (chunks.isEmpty()) {
+                AnnotatedText annotatedText = annotator.apply(text);
+                return commitInSeparateTransaction(writer, () -> processAnnotationPersist(id, text, annotatedText));
+            }
+            Node annotatedNode = null;
+            String pipeline = null;
+            String processor = null;
+            int sentenceOffset = 0;
+            for (int i = 0; i < chunks.size(); ++i) {
+                TextChunk chunk = chunks.get(i);
+                AnnotatedText annotatedChunk = annotator.apply(chunk.getText()).shift(sentenceOffset, chunk.getOffset());
+                sentenceOffset += annotatedChunk.getSentences().size();
+                pipeline = annotatedChunk.getPipeline();
+                processor = annotatedChunk.getTextProcessor();
+                boolean firstChunk = i == 0;
+                annotatedNode = commitInSeparateTransaction(writer, () -> {
+                    Node node = persister.persistChunk(annotatedChunk, id, txId, firstChunk, text);
+                    eventDispatcher.notify(NLPEvents.POST_TEXT_ANNOTATION, new TextAnnotationEvent(node, annotatedChunk, id, txId));
+                    return node;
+                });
+                LOG.info("Stored chunk " + (i + 1) + "/" + chunks.size() + " of text " + id);
+            }
+            AnnotatedText summary = new AnnotatedText();
+            summary.setText(text);
+            summary.setPipeline(pipeline);
+            summary.setTextProcessor(processor);
+            Node node = annotatedNode;
+            commitInSeparateTransaction(writer, () -> {
+                persister.update(node, summary, id);
+                return node;
+            });
+
+            return annotatedNode;
+        } finally {
+            writer.shutdownNow();
+        }
+    }
+
+    private <T> T commitInSeparateTransaction(ExecutorService writer, Supplier<T> work) {
+        Future<T> future = writer.submit(() -> {
+            try (Transaction tx = database.beginTx()) {
+                T result = work.get();
+                tx.success();
+
+                return result;
+            }
+        });
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while storing a chunk of text", e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Error while storing a chunk of text", e.getCause());
+        }
+    }
+
+    /**
+     * Returns the existing AnnotatedText node for the given id when it was annotated from the same
+     * text with the same text processor and pipeline definition, null when the text needs to be
+     * (re-)annotated.
+     */
+    public Node getUnchangedAnnotatedText(String id, String text, String textProcessor, String pipelineName) {
+        AnnotatedTextPersister persister = getPersister(AnnotatedText.class);
+        String processorName = getTextProcessorName(textProcessor, pipelineName);
+        try (Transaction tx = database.beginTx()) {
+            Node node = persister.getIfUnchanged(id, text, processorName, getPipeline(pipelineName));
+            tx.success();
+
+            return node;
+        }
+    }
+
+    /**
+     * @return the class name of the processor {@link #getAnnotator(String, String, String)} annotates
+     * with, null when there is none
+     */
+    private String getTextProcessorName(String textProcessor, String pipelineName) {
+        try {
+            return textProcessorsManager.retrieveTextProcessor(textProcessor, getPipeline(pipelineName)).getClass().getName();
+        } catch (Exception e) {
+            PipelineSpecification pipelineSpecification = getConfiguration().loadPipeline(pipelineName);
+            if (pipelineSpecification == null) {
+                return null;
+            }
+
+            return textProcessorsManager.getTextProcessor(pipelineSpecification.getTextProcessor()).getClass().getName();
+        }
+    }
+
+    public List<BatchResult> annotateTextsInBatch(AnnotationBatchRequest request) {
+        Iterator<Map<String, Object>> rows = request.getQuery() != null
+                ? database.execute(request.getQuery())
+                : request.getInput().iterator();
+        BatchExecutor executor = new BatchExecutor(database, request.getConcurrency(), request.getBatchSize());
+
+        // rows are validated by the workers, an invalid row is reported in the errors of its batch
+        return executor.execute(
+                rows,
+                row -> {
+                    AnnotationRequest item = request.toAnnotationRequest(row);
+
+                    return !item.isForce() && getUnchangedAnnotatedText(item.getId(), item.getText(), item.getTextProcessor(), item.getPipeline()) != null
+                            ? null
+                            : annotateText(item.getText(), item.getTextProcessor(), item.getPipeline(), item.shouldCheckLanguage());
+                },
+                (row, annotatedText) -> {
+                    if (annotatedText != null) {
+                        AnnotationRequest item = request.toAnnotationRequest(row);
+                        processAnnotationPersist(item.getId(), item.getText(), annotatedText);
+                    }
+                },
+                request::getRowId
+        );
     }
 
     public Node annotateTextAndPersist(String text, String id, boolean checkForLanguage, PipelineSpecification pipelineSpecification) {
         String lang = checkTextLanguage(text, checkForLanguage);
         TextProcessor processor = textProcessorsManager.getTextProcessor(pipelineSpecification.getTextProcessor());
-        AnnotatedText annotatedText = processor.annotateText(text, lang, pipelineSpecification);
+        AnnotatedText annotatedText = textProcessorsManager.execute(processor, pipelineSpecification.getName(),
+                instance -> instance.annotateText(text, lang, pipelineSpecification));
+        annotatedText.setPipeline(pipelineSpecification.getName());
+        annotatedText.setTextProcessor(processor.getClass().getName());
 
         return processAnnotationPersist(id, text, annotatedText);
     }
 
+    public String annotateTextAsync(AnnotationRequest annotationRequest) {
+        return getAnnotationQueue().submit(annotationRequest);
+    }
+
+    public AnnotationQueueStatus getAnnotationQueueStatus(String jobId) {
+        AnnotationQueue queue = getAnnotationQueue();
+        String status = null;
+        String error = null;
+        if (jobId != null && !jobId.isEmpty()) {
+            AnnotationJob job = queue.getJob(jobId);
+            if (job == null) {
+                throw new RuntimeException(String.format("No annotation job found with id %s", jobId));
+            }
+            status = job.getStatus().name();
+            error = job.getError();
+        }
+
+        return new AnnotationQueueStatus(queue.getQueueDepth(), queue.getInFlight(), queue.getCompleted(), queue.getFailed(), jobId, status, error);
+    }
+
+    private AnnotationQueue getAnnotationQueue() {
+        if (annotationQueue == null) {
+            synchronized (this) {
+                if (annotationQueue == null) {
+                    int workers = configuration.hasSettingValue(SettingsConstants.ASYNC_ANNOTATION_WORKERS)
+                            ? Integer.valueOf(configuration.getSettingValueFor(SettingsConstants.ASYNC_ANNOTATION_WORKERS).toString())
+                            : DEFAULT_ASYNC_ANNOTATION_WORKERS;
+                    int capacity = configuration.hasSettingValue(SettingsConstants.ASYNC_ANNOTATION_QUEUE_SIZE)
+                            ? Integer.valueOf(configuration.getSettingValueFor(SettingsConstants.ASYNC_ANNOTATION_QUEUE_SIZE).toString())
+                            : DEFAULT_ASYNC_ANNOTATION_QUEUE_SIZE;
+                    annotationQueue = new AnnotationQueue(this, database, workers, capacity);
+                }
+            }
+        }
+
+        return annotationQueue;
+    }
+
+    /**
+     * Annotates the given text without persisting it. Results are served from the annotation cache
+     * and are shared between callers, so they must not be modified.
+     */
+    public AnnotatedText getCachedAnnotation(String text, String textProcessor, String pipeline, String lang) {
+        TextProcessor processor = textProcessorsManager.retrieveTextProcessor(textProcessor, pipeline);
+
+        return getAnnotationCache().annotate(processor, text, pipeline, lang,
+                () -> textProcessorsManager.execute(processor, pipeline, instance -> instance.annotateText(text, pipeline, lang, null)));
+    }
+
+    public AnnotationCache getAnnotationCache() {
+        if (annotationCache == null) {
+            synchronized (this) {
+                if (annotationCache == null) {
+                    long size = configuration.hasSettingValue(SettingsConstants.ANNOTATION_CACHE_SIZE)
+                            ? Long.valueOf(configuration.getSettingValueFor(SettingsConstants.ANNOTATION_CACHE_SIZE).toString())
+                            : DEFAULT_ANNOTATION_CACHE_SIZE;
+                    annotationCache = new AnnotationCache(size);
+                }
+            }
+        }
+
+        return annotationCache;
+    }
+
     public Node processAnnotationPersist(String id, String text, AnnotatedText annotatedText) {
         String txId = String.valueOf(System.currentTimeMillis());
+        annotatedText.setText(text);
         Node annotatedNode = persistAnnotatedText(annotatedText, id, txId);
         TextAnnotationEvent event = new TextAnnotationEvent(annotatedNode, annotatedText, id, txId);
-        annotatedText.setText(text);
         eventDispatcher.notify(NLPEvents.POST_TEXT_ANNOTATION, event);
 
         return annotatedNode;
@@ -182,9 +605,29 @@ public final class NLPManager {
         return eventDispatcher;
     }
 
+    public List<PipelineStats> getPipelineStats(String pipelineName) {
+        return textProcessorsManager.getPipelineStats(pipelineName);
+    }
+
+    public List<ProcessorStatus> warmupProcessors(List<String> processors, long timeoutMillis) {
+        textProcessorsManager.warmup(processors);
+        if (timeoutMillis > 0) {
+            textProcessorsManager.awaitInitialisation(processors, timeoutMillis);
+        }
+
+        return getProcessorStatus("").stream()
+                .filter(status -> processors == null || processors.isEmpty() || processors.contains(status.processor))
+                .collect(Collectors.toList());
+    }
+
+    public List<ProcessorStatus> getProcessorStatus(String processor) {
+        return textProcessorsManager.getProcessorStatus(processor);
+    }
+
     public List<PipelineInfo> getPipelineInformations(String pipelineName) {
         List<PipelineInfo> list = new ArrayList<>();
-        textProcessorsManager.getTextProcessors().values().forEach((processor) -> {
+        // only the initialised processors, an information call does not load the others
+        textProcessorsManager.getTextProcessors().values().forEach(processor -> {
             processor.getPipelineInfos().forEach(pipelineInfo -> {
                 if (pipelineName.equals("") || pipelineInfo.getName().equals(pipelineName)) {
                     list.add(pipelineInfo);
@@ -209,49 +652,92 @@ public final class NLPManager {
 
     public void removePipeline(String pipeline, String processor) {
         configuration.removePipeline(pipeline, processor);
+        getAnnotationCache().invalidateAll();
     }
 
     public Boolean filter(FilterRequest filterRequest) {
         String text = filterRequest.getText();
-        checkTextLanguage(text, false);
         String lang = LanguageManager.getInstance().detectLanguage(text);
         String filter = filterRequest.getFilter();
         String pipeline = getPipeline(filterRequest.getPipeline());
         TextProcessor currentTP = textProcessorsManager.retrieveTextProcessor(filterRequest.getProcessor(), pipeline);
-        AnnotatedText annotatedText = currentTP.annotateText(text, "tokenizer", lang, null);
+        AnnotatedText annotatedText = textProcessorsManager.execute(currentTP, "tokenizer", instance -> instance.annotateText(text, "tokenizer", lang, null));
         return annotatedText.filter(filter);
 
     }
 
     public void applySentiment(Node node, String textProcessor) {
-        TextProcessor processor = textProcessor.equals("")
+        SentimentJob job = loadForSentiment(node);
+        getSentimentProcessor(textProcessor).sentiment(job.annotatedText);
+        storeSentiment(job);
+    }
+
+    /**
+     * Computes the sentiment of many stored texts in parallel. Sentences are read in the calling
+     * transaction, only their sentiment labels are written back, one transaction per batch.
+     */
+    public List<BatchResult> applySentimentInBatch(List<Node> nodes, String textProcessor, int concurrency, int batchSize) {
+        TextProcessor processor = getSentimentProcessor(textProcessor);
+        BatchExecutor executor = new BatchExecutor(database, concurrency, batchSize);
+
+        return executor.execute(
+                Iterators.transform(nodes.iterator(), this::loadForSentiment),
+                job -> processor.sentiment(job.annotatedText),
+                (job, result) -> storeSentiment(job),
+                job -> job.id
+        );
+    }
+
+    private TextProcessor getSentimentProcessor(String textProcessor) {
+        return textProcessor == null || textProcessor.equals("")
                 ? getTextProcessorsManager().getDefaultProcessor()
                 : getTextProcessorsManager().getTextProcessor(textProcessor);
+    }
 
-        AnnotatedText annotatedText = (AnnotatedText) getPersister(AnnotatedText.class).fromNode(node);
-        processor.sentiment(annotatedText);
-        getPersister(AnnotatedText.class).persist(
-                annotatedText,
-                node.getProperty(configuration.getPropertyKeyFor(Properties.PROPERTY_ID)).toString(),
-                String.valueOf(System.currentTimeMillis())
-        );
+    /**
+     * Reads the stored text into a detached copy, processors may read it from other threads outside
+     * of any transaction. Only the sentence node ids are kept for the write-back.
+     */
+    private SentimentJob loadForSentiment(Node node) {
+        AnnotatedTextPersister persister = getPersister(AnnotatedText.class);
+        LazyAnnotatedText stored = persister.lazyFromNode(node);
+        AnnotatedText annotatedText = new AnnotatedText();
+        annotatedText.setText(stored.getText());
+        annotatedText.setPipeline(stored.getPipeline());
+        annotatedText.setNumTerms(stored.getNumTerms());
+        List<Long> sentenceIds = new ArrayList<>();
+        for (Sentence storedSentence : stored.getSentences()) {
+            Sentence sentence = new Sentence(storedSentence.getSentence(), storedSentence.getSentenceNumber());
+            sentence.setSentiment(storedSentence.getSentiment());
+            annotatedText.addSentence(sentence);
+            sentenceIds.add(((LazySentence) storedSentence).getNode().getId());
+        }
+        String id = String.valueOf(node.getProperty(configuration.getPropertyKeyFor(Properties.PROPERTY_ID), node.getId()));
+
+        return new SentimentJob(id, annotatedText, sentenceIds);
+    }
+
+    private void storeSentiment(SentimentJob job) {
+        SentencePersister sentencePersister = getPersister(Sentence.class);
+        for (int i = 0; i < job.sentenceIds.size(); ++i) {
+            sentencePersister.storeSentiment(database.getNodeById(job.sentenceIds.get(i)), job.sentences.get(i).getSentiment());
+        }
     }
 
     private String checkTextLanguage(String text, boolean failIfUnsupported) {
-        LanguageManager languageManager = LanguageManager.getInstance();
-        String detectedLanguage = languageManager.detectLanguage(text);
+        LanguageDetectionResult detection = LanguageManager.getInstance().detect(text);
 
-        if (!languageManager.isTextLanguageSupported(text) && configuration.hasSettingValue(SettingsConstants.FALLBACK_LANGUAGE)) {
+        if (!detection.isSupported() && configuration.hasSettingValue(SettingsConstants.FALLBACK_LANGUAGE)) {
             return configuration.getSettingValueFor(SettingsConstants.FALLBACK_LANGUAGE).toString();
         }
 
-        if (!languageManager.isTextLanguageSupported(text) && failIfUnsupported) {
-            String msg = String.format("Unsupported language : %s", detectedLanguage);
+        if (!detection.isSupported() && failIfUnsupported) {
+            String msg = String.format("Unsupported language : %s", detection.getLanguage());
             LOG.error(msg);
             throw new RuntimeException(msg);
         }
 
-        return detectedLanguage;
+        return detection.getLanguage();
     }
 
     public Set<ProcessorsList> getProcessors() {
@@ -270,6 +756,7 @@ public final class NLPManager {
             throw new RuntimeException(String.format("Invalid text processor %s", request.getTextProcessor()));
         }
         configuration.storeCustomPipeline(request);
+        getAnnotationCache().invalidateAll();
     }
 
     public Enricher getEnricher(String name) {
@@ -319,11 +806,17 @@ public final class NLPManager {
             // this method to fail completely for valid pipelines, we just do not register
             // possible legacy pipelines
             if (textProcessorsManager.getTextProcessorNames().contains(pipelineSpecification.getTextProcessor())) {
-                textProcessorsManager.createPipeline(pipelineSpecification);
+                textProcessorsManager.registerPipeline(pipelineSpecification);
             }
         });
     }
 
+    private int getProcessorPoolSize() {
+        return configuration.hasSettingValue(SettingsConstants.PROCESSOR_POOL_SIZE)
+                ? Integer.valueOf(configuration.getSettingValueFor(SettingsConstants.PROCESSOR_POOL_SIZE).toString())
+                : 0;
+    }
+
     private String getPipeline(String pipelineName) {
         return ProcessorUtils.getPipeline(pipelineName, configuration);
     }
@@ -345,4 +838,22 @@ public final class NLPManager {
         TextProcessor processor = textProcessorsManager.getTextProcessor(request.getTextProcessor());
         return processor.test(request.getAlg(), request.getModelID(), request.getInputFile(), request.getLanguage());
     }
+
+    private static final class SentimentJob {
+
+        private final String id;
+
+        private final AnnotatedText annotatedText;
+
+        private final List<Sentence> sentences;
+
+        private final List<Long> sentenceIds;
+
+        private SentimentJob(String id, AnnotatedText annotatedText, List<Long> sentenceIds) {
+            this.id = id;
+            this.annotatedText = annotatedText;
+            this.sentences = new ArrayList<>(annotatedText.getSentences());
+            this.sentenceIds = sentenceIds;
+        }
+    }
 }
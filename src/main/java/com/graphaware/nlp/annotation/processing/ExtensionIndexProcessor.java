@@ -0,0 +1,92 @@
+/*
+ * Copyright (c) 2013-2017 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package com.graphaware.nlp.annotation.processing;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.TypeElement;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Writes at compile time the index of the classes annotated with the NLP extension annotations,
+ * one file per annotation under {@link #INDEX_LOCATION}, read by
+ * {@link com.graphaware.nlp.util.ServiceLoader} instead of scanning the classpath.
+ */
+@SupportedAnnotationTypes({
+        ExtensionIndexProcessor.TEXT_PROCESSOR_ANNOTATION,
+        ExtensionIndexProcessor.MODULE_EXTENSION_ANNOTATION
+})
+public class ExtensionIndexProcessor extends AbstractProcessor {
+
+    public static final String INDEX_LOCATION = "META-INF/graphaware-nlp/";
+
+    static final String TEXT_PROCESSOR_ANNOTATION = "com.graphaware.nlp.annotation.NLPTextProcessor";
+    static final String MODULE_EXTENSION_ANNOTATION = "com.graphaware.nlp.annotation.NLPModuleExtension";
+
+    private final Map<String, Set<String>> index = new TreeMap<>();
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        if (roundEnv.processingOver()) {
+            writeIndex();
+            return false;
+        }
+        for (TypeElement annotation : annotations) {
+            for (Element element : roundEnv.getElementsAnnotatedWith(annotation)) {
+                if (element.getKind() != ElementKind.CLASS) {
+                    continue;
+                }
+                index.computeIfAbsent(annotation.getQualifiedName().toString(), k -> new TreeSet<>())
+                        .add(processingEnv.getElementUtils().getBinaryName((TypeElement) element).toString());
+            }
+        }
+
+        return false;
+    }
+
+    private void writeIndex() {
+        index.forEach((annotation, classes) -> {
+            try {
+                FileObject file = processingEnv.getFiler().createResource(StandardLocation.CLASS_OUTPUT, "", INDEX_LOCATION + annotation);
+                try (Writer writer = file.openWriter()) {
+                    for (String clazz : classes) {
+                        writer.write(clazz);
+                        writer.write('\n');
+                    }
+                }
+            } catch (IOException e) {
+                processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "Cannot write the extension index for " + annotation + ": " + e.getMessage());
+            }
+        });
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright (c) 2013-2017 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package com.graphaware.nlp.configuration;
+
+import com.graphaware.nlp.dsl.request.PipelineSpecification;
+import org.codehaus.jackson.map.ObjectMapper;
+import org.neo4j.graphdb.Label;
+import org.neo4j.graphdb.RelationshipType;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.graphaware.nlp.configuration.DynamicConfiguration.*;
+
+/**
+ * Immutable view of the user provided configuration at a given version, with the mapped labels,
+ * relationship types and property keys resolved and the custom pipelines deserialized once. Pipeline
+ * specifications are shared by all the readers of the snapshot and must not be modified.
+ */
+public final class ConfigurationSnapshot {
+
+    private final long version;
+
+    private final Map<String, Object> values;
+
+    private final Map<String, Label> labels = new HashMap<>();
+
+    private final Map<String, RelationshipType> relationships = new HashMap<>();
+
+    private final Map<String, String> propertyKeys = new HashMap<>();
+
+    private final Map<String, Object> settings = new HashMap<>();
+
+    private final Map<String, PipelineSpecification> pipelines = new LinkedHashMap<>();
+
+    ConfigurationSnapshot(long version, Map<String, Object> values, ObjectMapper mapper) {
+        this.version = version;
+        this.values = Collections.unmodifiableMap(new HashMap<>(values));
+        values.forEach((key, value) -> {
+            if (key.startsWith(LABEL_KEY_PREFIX)) {
+                labels.put(key.substring(LABEL_KEY_PREFIX.length()), Label.label(value.toString()));
+            } else if (key.startsWith(RELATIONSHIP_TYPE_KEY_PREFIX)) {
+                relationships.put(key.substring(RELATIONSHIP_TYPE_KEY_PREFIX.length()), RelationshipType.withName(value.toString()));
+            } else if (key.startsWith(PROPERTY_KEY_PREFIX)) {
+                propertyKeys.put(key.substring(PROPERTY_KEY_PREFIX.length()), value.toString());
+            } else if (key.startsWith(SETTING_KEY_PREFIX)) {
+                settings.put(key.substring(SETTING_KEY_PREFIX.length()), value);
+            } else if (key.startsWith(PIPELINE_KEY_PREFIX)) {
+                try {
+                    PipelineSpecification pipelineSpecification = mapper.readValue(value.toString(), PipelineSpecification.class);
+                    pipelines.put(pipelineSpecification.getName(), pipelineSpecification);
+                } catch (Exception e) {
+                    throw new RuntimeException(e.getMessage());
+                }
+            }
+        });
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public Map<String, Object> getValues() {
+        return values;
+    }
+
+    public Label getLabelFor(Label label) {
+        Label mapped = labels.get(label.name());
+
+        return mapped != null ? mapped : label;
+    }
+
+    public RelationshipType getRelationshipFor(RelationshipType relationship) {
+        RelationshipType mapped = relationships.get(relationship.name());
+
+        return mapped != null ? mapped : relationship;
+    }
+
+    public String getPropertyKeyFor(String key) {
+        String mapped = propertyKeys.get(key);
+
+        return mapped != null ? mapped : key;
+    }
+
+    public boolean hasSettingValue(String key) {
+        return settings.containsKey(key);
+    }
+
+    public Object getSettingValueFor(String key) {
+        return settings.containsKey(key) ? settings.get(key) : key;
+    }
+
+    public PipelineSpecification getPipeline(String name) {
+        return pipelines.get(name);
+    }
+
+    public List<PipelineSpecification> getPipelines() {
+        return new ArrayList<>(pipelines.values());
+    }
+}
@@ -20,85 +20,121 @@ import com.graphaware.common.kv.GraphKeyValueStore;
 import com.graphaware.nlp.dsl.request.PipelineSpecification;
 import org.neo4j.graphdb.GraphDatabaseService;
 import org.neo4j.graphdb.Label;
+import org.neo4j.graphdb.Node;
 import org.neo4j.graphdb.RelationshipType;
 import org.neo4j.graphdb.Transaction;
+import org.neo4j.graphdb.event.PropertyEntry;
+import org.neo4j.graphdb.event.TransactionData;
+import org.neo4j.graphdb.event.TransactionEventHandler;
 
-import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
 
+/**
+ * User provided configuration, stored in the graph key value store. Reads are served from an immutable
+ * {@link ConfigurationSnapshot} that is rebuilt and swapped on every change.
+ */
 public class DynamicConfiguration {
 
     private static final String STORE_KEY = "GA__NLP__";
-    private static final String LABEL_KEY_PREFIX = "LABEL_";
-    private static final String RELATIONSHIP_TYPE_KEY_PREFIX = "RELATIONSHIP_";
-    private static final String PROPERTY_KEY_PREFIX = "PROPERTY_";
-    private static final String SETTING_KEY_PREFIX = "SETTING_";
-    private static final String PIPELINE_KEY_PREFIX = "PIPELINE_";
+    static final String LABEL_KEY_PREFIX = "LABEL_";
+    static final String RELATIONSHIP_TYPE_KEY_PREFIX = "RELATIONSHIP_";
+    static final String PROPERTY_KEY_PREFIX = "PROPERTY_";
+    static final String SETTING_KEY_PREFIX = "SETTING_";
+    static final String PIPELINE_KEY_PREFIX = "PIPELINE_";
     
     private final GraphDatabaseService database;
     private final GraphKeyValueStore keyValueStore;
-    private Map<String, Object> userProvidedConfiguration;
     private final ObjectMapper mapper = new ObjectMapper();
+    private volatile ConfigurationSnapshot snapshot;
+    private final List<Consumer<ConfigurationSnapshot>> listeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * Applies the configuration keys changed by a committed transaction to the snapshot, whether they
+     * went through this class or were written to the key value store directly. Rolled back changes
+     * are never seen. The store cannot be read again here, the committed transaction being still
+     * bound to the thread.
+     */
+    private final TransactionEventHandler<Void> reloadHandler = new TransactionEventHandler.Adapter<Void>() {
+        @Override
+        public void afterCommit(TransactionData data, Void state) {
+            applyCommittedChanges(data);
+        }
+    };
 
     public DynamicConfiguration(GraphDatabaseService database) {
         this.database = database;
         this.keyValueStore = new GraphKeyValueStore(database);
+        database.registerTransactionEventHandler(reloadHandler);
         loadUserConfiguration();
     }
 
-    public Label getLabelFor(Label label) {
-        if (!userProvidedConfiguration.containsKey(LABEL_KEY_PREFIX + label.toString())) {
-            return label;
-        }
+    /**
+     * Read-only configuration holding the given key values, as listed by ga.nlp.config.show, for tools
+     * working on a store without a running database.
+     */
+    public DynamicConfiguration(Map<String, Object> userProvidedConfiguration) {
+        this.database = null;
+        this.keyValueStore = null;
+        this.snapshot = new ConfigurationSnapshot(0, userProvidedConfiguration, mapper);
+    }
 
-        return Label.label(userProvidedConfiguration.get(LABEL_KEY_PREFIX + label.toString()).toString());
+    public ConfigurationSnapshot getSnapshot() {
+        return snapshot;
     }
 
-    public RelationshipType getRelationshipFor(RelationshipType relationship) {
-        if (!userProvidedConfiguration.containsKey(RELATIONSHIP_TYPE_KEY_PREFIX + relationship.name())) {
-            return relationship;
-        }
+    /**
+     * Registers a listener called with the new snapshot after every committed configuration change.
+     */
+    public void addListener(Consumer<ConfigurationSnapshot> listener) {
+        listeners.add(listener);
+    }
 
-        return RelationshipType.withName(userProvidedConfiguration.get(RELATIONSHIP_TYPE_KEY_PREFIX + relationship.name()).toString());
+    public Label getLabelFor(Label label) {
+        return snapshot.getLabelFor(label);
     }
 
-    public String getPropertyKeyFor(String key) {
-        if (!userProvidedConfiguration.containsKey(PROPERTY_KEY_PREFIX + key)) {
-            return key;
-        }
+    public RelationshipType getRelationshipFor(RelationshipType relationship) {
+        return snapshot.getRelationshipFor(relationship);
+    }
 
-        return userProvidedConfiguration.get(PROPERTY_KEY_PREFIX + key).toString();
+    public String getPropertyKeyFor(String key) {
+        return snapshot.getPropertyKeyFor(key);
     }
 
     public Object getSettingValueFor(String key) {
-        if (!userProvidedConfiguration.containsKey(SETTING_KEY_PREFIX + key)) {
-            return key;
-        }
-
-        return userProvidedConfiguration.get(SETTING_KEY_PREFIX + key);
+        return snapshot.getSettingValueFor(key);
     }
 
     public boolean hasSettingValue(String key) {
-        return userProvidedConfiguration.containsKey(SETTING_KEY_PREFIX + key);
+        return snapshot.hasSettingValue(key);
     }
 
     public void removeSettingValue(String key) {
-        String k = SETTING_KEY_PREFIX + key;
-        if (userProvidedConfiguration.containsKey(k)) {
-            removeKey( STORE_KEY + k);
-            userProvidedConfiguration.remove(k);
+        if (snapshot.hasSettingValue(key)) {
+            removeKey(STORE_KEY + SETTING_KEY_PREFIX + key);
         }
     }
 
+    /**
+     * @return true if the key maps a label or a property key, which changes the schema the persisters need
+     */
+    public static boolean isMappingKey(String key) {
+        return key.startsWith(LABEL_KEY_PREFIX) || key.startsWith(PROPERTY_KEY_PREFIX);
+    }
+
+    /**
+     * Stores the value, the change is visible once the enclosing transaction, if any, is committed.
+     */
     public void update(String key, Object value) {
+        checkWritable();
         try (Transaction tx = database.beginTx()) {
             keyValueStore.set(STORE_KEY + key, value);
             tx.success();
         }
-        loadUserConfiguration();
     }
 
     public void storeCustomPipeline(PipelineSpecification pipelineSpecification) {
@@ -112,70 +148,79 @@ public class DynamicConfiguration {
     }
 
     public List<PipelineSpecification> loadCustomPipelines() {
-        List<PipelineSpecification> list = new ArrayList<>();
-        Map<String, Object> config = getAllConfigValuesFromStore();
-        config.keySet().forEach(k -> {
-            if (k.startsWith(PIPELINE_KEY_PREFIX)) {
-                try {
-                    PipelineSpecification pipelineSpecification = mapper.readValue(config.get(k).toString(), PipelineSpecification.class);
-                    list.add(pipelineSpecification);
-                } catch (Exception e) {
-                    throw new RuntimeException(e.getMessage());
-                }
-            }
-        });
-
-        return list;
+        return snapshot.getPipelines();
     }
 
     public PipelineSpecification loadPipeline(String name) {
-        Map<String, Object> config = getAllConfigValuesFromStore();
-        AtomicReference<PipelineSpecification> result = new AtomicReference<>();
-        config.keySet().forEach(k -> {
-            if (k.startsWith(PIPELINE_KEY_PREFIX)) {
-                try {
-                    PipelineSpecification pipelineSpecification = mapper.readValue(config.get(k).toString(), PipelineSpecification.class);
-                    if (pipelineSpecification.getName().equals(name)) {
-                        result.set(pipelineSpecification);
-                    }
-                } catch (Exception e) {
-                    throw new RuntimeException(e.getMessage());
-                }
-            }
-        });
-
-        return result.get();
+        return snapshot.getPipeline(name);
     }
 
     public void removePipeline(String name, String textProcessor) {
-        Map<String, Object> config = getAllConfigValuesFromStore();
-        config.keySet().forEach(k -> {
-            if (k.startsWith(PIPELINE_KEY_PREFIX)) {
-                try {
-                    PipelineSpecification pipelineSpecification = mapper.readValue(config.get(k).toString(), PipelineSpecification.class);
-                    if (pipelineSpecification.getName().equals(name) && pipelineSpecification.getTextProcessor().equals(textProcessor)) {
-                        removeKey(STORE_KEY + k);
-                    }
-                } catch (Exception e) {
-                    throw new RuntimeException(e.getMessage());
-                }
-            }
-        });
+        PipelineSpecification pipelineSpecification = snapshot.getPipeline(name);
+        if (pipelineSpecification != null && pipelineSpecification.getTextProcessor().equals(textProcessor)) {
+            removeKey(STORE_KEY + PIPELINE_KEY_PREFIX + name);
+        }
     }
 
     public void updateInternalSetting(String key, Object value) {
+        checkWritable();
         try (Transaction tx = database.beginTx()) {
             keyValueStore.set(STORE_KEY + SETTING_KEY_PREFIX + key, value);
             tx.success();
         }
-        loadUserConfiguration();
     }
 
-    private void loadUserConfiguration() {
-        userProvidedConfiguration = getAllConfigValuesFromStore();
+    /**
+     * Stops following the changes of the store.
+     */
+    public void shutdown() {
+        if (database != null) {
+            database.unregisterTransactionEventHandler(reloadHandler);
+        }
+    }
+
+    private void checkWritable() {
+        if (database == null) {
+            throw new RuntimeException("This configuration is read-only");
+        }
+    }
+
+    private synchronized void applyCommittedChanges(TransactionData data) {
+        if (snapshot == null) {
+            // committed before the first load, which reads it from the store
+            return;
+        }
+        Map<String, Object> values = new HashMap<>(snapshot.getValues());
+        boolean changed = false;
+        for (PropertyEntry<Node> entry : data.removedNodeProperties()) {
+            if (entry.key().startsWith(STORE_KEY)) {
+                values.remove(entry.key().substring(STORE_KEY.length()));
+                changed = true;
+            }
+        }
+        for (PropertyEntry<Node> entry : data.assignedNodeProperties()) {
+            if (entry.key().startsWith(STORE_KEY)) {
+                values.put(entry.key().substring(STORE_KEY.length()), entry.value());
+                changed = true;
+            }
+        }
+        if (changed) {
+            setSnapshot(values);
+        }
+    }
+
+    private synchronized void loadUserConfiguration() {
+        setSnapshot(getAllConfigValuesFromStore());
+    }
+
+    private synchronized void setSnapshot(Map<String, Object> values) {
+        long version = snapshot != null ? snapshot.getVersion() + 1 : 0;
+        snapshot = new ConfigurationSnapshot(version, values, mapper);
+        listeners.forEach(listener -> listener.accept(snapshot));
     }
 
     private void removeKey(String key) {
+        checkWritable();
         try (Transaction tx = database.beginTx()) {
             if (keyValueStore.hasKey(key)) {
                 keyValueStore.remove(key);
@@ -185,6 +230,9 @@ public class DynamicConfiguration {
     }
 
     public Map<String, Object> getAllConfigValuesFromStore() {
+        if (database == null) {
+            return new HashMap<>(snapshot.getValues());
+        }
         Map<String, Object> map = new HashMap<>();
         try (Transaction tx = database.beginTx()) {
             keyValueStore.getKeys().forEach(k -> {
@@ -5,4 +5,12 @@ public final class SettingsConstants {
     public static final String FALLBACK_LANGUAGE = "fallbackLanguage";
     public static final String DEFAULT_TEXT_PROCESSOR = "defaultProcessor";
     public static final String DEFAULT_PIPELINE = "defaultPipeline";
+    public static final String ASYNC_ANNOTATION_WORKERS = "asyncAnnotationWorkers";
+    public static final String ASYNC_ANNOTATION_QUEUE_SIZE = "asyncAnnotationQueueSize";
+    public static final String ANNOTATION_CACHE_SIZE = "annotationCacheSize";
+    public static final String PROCESSOR_POOL_SIZE = "processorPoolSize";
+    public static final String PACKED_OCCURRENCES = "packedOccurrences";
+    public static final String ASYNC_TAG_MERGE = "asyncTagMerge";
+    public static final String SENTENCE_TEXT_OFFSETS = "sentenceTextOffsets";
+    public static final String COMPRESS_TEXT = "compressText";
 }
@@ -34,6 +34,10 @@ public class AnnotatedText {
 
     private int numTerms;
 
+    private String pipeline;
+
+    private String textProcessor;
+
     private List<Sentence> sentences = new ArrayList<>();
 
     public List<Sentence> getSentences() {
@@ -62,6 +66,22 @@ public class AnnotatedText {
         this.text = text;
     }
 
+    public String getPipeline() {
+        return pipeline;
+    }
+
+    public void setPipeline(String pipeline) {
+        this.pipeline = pipeline;
+    }
+
+    public String getTextProcessor() {
+        return textProcessor;
+    }
+
+    public void setTextProcessor(String textProcessor) {
+        this.textProcessor = textProcessor;
+    }
+
     public int getNumTerms() {
         return numTerms;
     }
@@ -107,6 +127,23 @@ public class AnnotatedText {
         return result;
     }
 
+    /**
+     * Returns a copy of this annotation with its sentences renumbered from sentenceOffset and their
+     * occurrences moved by charOffset, used when a text is annotated in chunks.
+     */
+    public AnnotatedText shift(int sentenceOffset, int charOffset) {
+        AnnotatedText shifted = new AnnotatedText();
+        shifted.setPipeline(pipeline);
+        shifted.setTextProcessor(textProcessor);
+        List<Sentence> sorted = getSentencesSorted();
+        for (int i = 0; i < sorted.size(); ++i) {
+            Sentence sentence = sorted.get(i);
+            shifted.addSentence(sentence.shift(sentenceOffset + i - sentence.getSentenceNumber(), charOffset));
+        }
+
+        return shifted;
+    }
+
     public List<Sentence> getSentencesSorted() {
         sentences.sort((Sentence o1, Sentence o2) -> o1.compareTo(o2));
 
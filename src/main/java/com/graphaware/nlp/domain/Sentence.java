@@ -32,6 +32,7 @@ public class Sentence implements Comparable<Sentence> {
     private int sentiment = NO_SENTIMENT;
     private String id;
     private int sentenceNumber;
+    private int textOffset = -1;
 
     public Sentence(String sentence, int sentenceNumber) {
         this(sentence);
@@ -157,6 +158,17 @@ public class Sentence implements Comparable<Sentence> {
         return sentence;
     }
 
+    /**
+     * @return the offset of the sentence text in the text of the document, -1 when unknown
+     */
+    public int getTextOffset() {
+        return textOffset;
+    }
+
+    public void setTextOffset(int textOffset) {
+        this.textOffset = textOffset;
+    }
+
     @Override
     public int compareTo(Sentence o) {
         if (o == null || !(o instanceof Sentence))
@@ -198,6 +210,31 @@ public class Sentence implements Comparable<Sentence> {
         return HashFunctions.MD5(sentence);
     }
 
+    /**
+     * Returns a copy of this sentence with the sentence number and all the tag and phrase
+     * occurrence spans moved by the given offsets, used when a text is annotated in chunks.
+     */
+    public Sentence shift(int sentenceOffset, int charOffset) {
+        Sentence shifted = new Sentence(sentence, sentenceNumber + sentenceOffset);
+        shifted.id = id;
+        shifted.sentiment = sentiment;
+        shifted.textOffset = textOffset >= 0 ? textOffset + charOffset : -1;
+        shifted.tags.putAll(tags);
+        shifted.typedDependencies.addAll(typedDependencies);
+        tagOccurrences.values().forEach(occurrences -> occurrences.forEach(occurrence -> {
+            int begin = occurrence.getSpan().first() + charOffset;
+            shifted.tagOccurrences.computeIfAbsent(begin, k -> new ArrayList<>())
+                    .add(new TagOccurrence(occurrence.getElement(), begin, occurrence.getSpan().second() + charOffset, occurrence.getValue(), occurrence.getPartIds()));
+        }));
+        if (phraseOccurrences != null) {
+            phraseOccurrences.values().forEach(occurrences -> occurrences.values().forEach(occurrence -> {
+                shifted.addPhraseOccurrence(occurrence.getSpan().first() + charOffset, occurrence.getSpan().second() + charOffset, occurrence.getElement());
+            }));
+        }
+
+        return shifted;
+    }
+
 //    public static Sentence load(Node sentenceNode) {
 //        if (!sentenceNode.hasProperty(TEXT)) {
 //            throw new RuntimeException("Sentences need to contain text inside to can extract sentiment");
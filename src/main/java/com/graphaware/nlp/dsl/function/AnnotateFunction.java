@@ -19,7 +19,6 @@ import org.codehaus.jackson.map.ObjectMapper;
 import com.graphaware.nlp.domain.AnnotatedText;
 import com.graphaware.nlp.dsl.AbstractDSL;
 import com.graphaware.nlp.dsl.request.PipelineSpecification;
-import com.graphaware.nlp.processor.TextProcessor;
 import org.codehaus.jackson.map.SerializationConfig;
 import org.neo4j.procedure.Description;
 import org.neo4j.procedure.Name;
@@ -29,17 +28,19 @@ import java.util.Map;
 
 public class AnnotateFunction extends AbstractDSL {
 
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    static {
+        MAPPER.configure(SerializationConfig.Feature.FAIL_ON_EMPTY_BEANS, false);
+    }
+
     @UserFunction("ga.nlp.processor.annotate")
     @Description("Perform the annotation on the given text, returns the produced annotation domain")
     public Map<String, Object> getAnnotation(@Name("text") String text, @Name("pipelineSpecification") Map<String, Object> specificationInput) {
         PipelineSpecification pipelineSpecification = PipelineSpecification.fromMap(specificationInput);
-        TextProcessor processor = getNLPManager().getTextProcessorsManager().retrieveTextProcessor(pipelineSpecification.getTextProcessor(), pipelineSpecification.getName());
-        AnnotatedText annotatedText = processor.annotateText(text, pipelineSpecification.getName(), "en", null);
-
-        ObjectMapper mapper = new ObjectMapper();
-        mapper.configure(SerializationConfig.Feature.FAIL_ON_EMPTY_BEANS, false);
+        AnnotatedText annotatedText = getNLPManager().getCachedAnnotation(text, pipelineSpecification.getTextProcessor(), pipelineSpecification.getName(), "en");
 
-        return mapper.convertValue(annotatedText, Map.class);
+        return MAPPER.convertValue(annotatedText, Map.class);
     }
 
 
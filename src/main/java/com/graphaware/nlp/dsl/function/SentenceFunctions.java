@@ -15,8 +15,11 @@
  */
 package com.graphaware.nlp.dsl.function;
 
+import com.graphaware.nlp.domain.Sentence;
+import com.graphaware.nlp.dsl.AbstractDSL;
 import com.graphaware.nlp.persistence.constants.Properties;
 import com.graphaware.nlp.persistence.constants.Relationships;
+import com.graphaware.nlp.persistence.persisters.SentencePersister;
 import org.neo4j.graphdb.Direction;
 import org.neo4j.graphdb.Node;
 import org.neo4j.graphdb.Relationship;
@@ -29,7 +32,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
-public class SentenceFunctions {
+public class SentenceFunctions extends AbstractDSL {
 
     @UserFunction("ga.nlp.sentence.nextTags")
     @Description("Returns a list of Tag nodes that appear just after the given Tag in a sentence along with the frequency")
@@ -49,6 +52,30 @@ public class SentenceFunctions {
                     Node tag = occurence.getSingleRelationship(Relationships.TAG_OCCURRENCE_TAG, Direction.OUTGOING).getEndNode();
                     Integer freq = freqMap.containsKey(tag.getId()) ? freqMap.get(tag.getId()) + 1 : 1;
                     freqMap.put(tag.getId(), freq);
+                    references.put(tag.getId(), tag);
+                }
+            }
+        }
+
+        SentencePersister persister = getSentencePersister();
+        for (Relationship rel : from.getRelationships(Relationships.HAS_TAG, Direction.INCOMING)) {
+            Node sentence = rel.getStartNode();
+            if (!persister.hasPackedOccurrences(sentence)) {
+                continue;
+            }
+            List<Map<String, Object>> occurrences = persister.getOccurrences(sentence);
+            for (Map<String, Object> occurrence : occurrences) {
+                if (((Node) occurrence.get("tag")).getId() != from.getId()) {
+                    continue;
+                }
+                int minPosition = (int) occurrence.get("end");
+                for (Map<String, Object> next : occurrences) {
+                    if ((int) next.get("begin") == (minPosition + 1)) {
+                        Node tag = (Node) next.get("tag");
+                        Integer freq = freqMap.containsKey(tag.getId()) ? freqMap.get(tag.getId()) + 1 : 1;
+                        freqMap.put(tag.getId(), freq);
+                        references.put(tag.getId(), tag);
+                    }
                 }
             }
         }
@@ -64,4 +91,26 @@ public class SentenceFunctions {
         return response;
     }
 
+    @UserFunction("ga.nlp.sentence.occurrences")
+    @Description("Returns the tag occurrences of a sentence ordered by position, stored as nodes or packed on the sentence")
+    public List<Map<String, Object>> occurrences(@Name("sentence") Node sentence) {
+        return getSentencePersister().getOccurrences(sentence);
+    }
+
+    @UserFunction("ga.nlp.sentence.dependencies")
+    @Description("Returns the typed dependencies of a sentence, source and target being indexes in ga.nlp.sentence.occurrences")
+    public List<Map<String, Object>> dependencies(@Name("sentence") Node sentence) {
+        return getSentencePersister().getDependencies(sentence);
+    }
+
+    @UserFunction("ga.nlp.sentence.text")
+    @Description("Returns the text of a sentence, stored on the sentence or as offsets into the text of its document")
+    public String text(@Name("sentence") Node sentence) {
+        return getSentencePersister().getText(sentence);
+    }
+
+    private SentencePersister getSentencePersister() {
+        return getNLPManager().getPersister(Sentence.class);
+    }
+
 }
@@ -16,8 +16,11 @@
 package com.graphaware.nlp.dsl.procedure;
 
 import com.graphaware.nlp.dsl.AbstractDSL;
+import com.graphaware.nlp.dsl.request.AnnotationBatchRequest;
 import com.graphaware.nlp.dsl.request.AnnotationRequest;
 import com.graphaware.nlp.dsl.request.FilterRequest;
+import com.graphaware.nlp.dsl.result.AnnotationQueueStatus;
+import com.graphaware.nlp.dsl.result.BatchResult;
 import com.graphaware.nlp.dsl.result.NodeResult;
 import com.graphaware.nlp.dsl.result.SingleResult;
 import org.neo4j.graphdb.Node;
@@ -36,6 +39,9 @@ public class AnnotateProcedure extends AbstractDSL {
     public Stream<NodeResult> annotate(@Name("annotationRequest") Map<String, Object> annotationRequest) {
         try {
             AnnotationRequest request = AnnotationRequest.fromMap(annotationRequest);
+            if (request.getChunkSize() > 0) {
+                throw new RuntimeException("chunkSize is not supported within the calling transaction, use ga.nlp.annotate.async instead");
+            }
             Node result = getNLPManager().annotateTextAndPersist(request);
             return Stream.of(new NodeResult(result));
         } catch (Exception e) {
@@ -44,6 +50,33 @@ public class AnnotateProcedure extends AbstractDSL {
         }
     }
     
+    @Procedure(name = "ga.nlp.annotate.batch", mode = Mode.WRITE)
+    @Description("Performs the annotation of many texts in parallel and stores them into the graph in batched transactions")
+    public Stream<BatchResult> annotateBatch(@Name("annotationBatchRequest") Map<String, Object> annotationBatchRequest) {
+        try {
+            AnnotationBatchRequest request = AnnotationBatchRequest.fromMap(annotationBatchRequest);
+            return getNLPManager().annotateTextsInBatch(request).stream();
+        } catch (Exception e) {
+            e.printStackTrace();
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Procedure(name = "ga.nlp.annotate.async", mode = Mode.READ)
+    @Description("Enqueues the text annotation, the annotation is performed and stored by background workers. Returns the job id")
+    public Stream<SingleResult> annotateAsync(@Name("annotationRequest") Map<String, Object> annotationRequest) {
+        AnnotationRequest request = AnnotationRequest.fromMap(annotationRequest);
+        String jobId = getNLPManager().annotateTextAsync(request);
+
+        return Stream.of(new SingleResult(jobId));
+    }
+
+    @Procedure(name = "ga.nlp.annotate.async.status", mode = Mode.READ)
+    @Description("Returns the asynchronous annotation queue depth, in-flight and completed jobs, and the status of the given job")
+    public Stream<AnnotationQueueStatus> annotateAsyncStatus(@Name(value = "jobId", defaultValue = "") String jobId) {
+        return Stream.of(getNLPManager().getAnnotationQueueStatus(jobId));
+    }
+
     @Procedure(name = "ga.nlp.filter", mode = Mode.WRITE)
     @Description("Boolean filter for text accordingly to complex filter definition")
     public Stream<SingleResult> filter(@Name("filterRequest") Map<String, Object> filterRequest) {
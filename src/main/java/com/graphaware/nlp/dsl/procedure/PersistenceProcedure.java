@@ -0,0 +1,64 @@
+/*
+ * Copyright (c) 2013-2017 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package com.graphaware.nlp.dsl.procedure;
+
+import com.google.common.cache.CacheStats;
+import com.graphaware.nlp.domain.Tag;
+import com.graphaware.nlp.dsl.AbstractDSL;
+import com.graphaware.nlp.dsl.result.KeyValueResult;
+import com.graphaware.nlp.dsl.result.SchemaStatus;
+import com.graphaware.nlp.persistence.NodeIdCache;
+import com.graphaware.nlp.persistence.TagMerger;
+import com.graphaware.nlp.persistence.persisters.TagPersister;
+import org.neo4j.procedure.Description;
+import org.neo4j.procedure.Procedure;
+
+import java.util.stream.Stream;
+
+public class PersistenceProcedure extends AbstractDSL {
+
+    @Procedure("ga.nlp.schema.status")
+    @Description("Returns the index state of each key looked up by the persisters, with the configured labels and property keys")
+    public Stream<SchemaStatus> getSchemaStatus() {
+        return getNLPManager().getSchemaManager().getStatus().stream();
+    }
+
+    @Procedure("ga.nlp.persistence.cache.stats")
+    @Description("Returns the hit and miss statistics of the cache of tag, phrase and keyword nodes used by the persisters")
+    public Stream<KeyValueResult> getNodeIdCacheStats() {
+        NodeIdCache cache = getNLPManager().getNodeIdCache();
+        CacheStats stats = cache.stats();
+
+        return Stream.of(
+                new KeyValueResult("size", cache.size()),
+                new KeyValueResult("hitCount", stats.hitCount()),
+                new KeyValueResult("missCount", stats.missCount()),
+                new KeyValueResult("hitRate", stats.hitRate()),
+                new KeyValueResult("evictionCount", stats.evictionCount())
+        );
+    }
+
+    @Procedure("ga.nlp.persistence.tagMerge.stats")
+    @Description("Returns the number of tag changes waiting for the background merger and the number already applied")
+    public Stream<KeyValueResult> getTagMergeStats() {
+        TagMerger tagMerger = ((TagPersister) getNLPManager().getPersister(Tag.class)).getTagMerger();
+
+        return Stream.of(
+                new KeyValueResult("pending", tagMerger.getPendingCount()),
+                new KeyValueResult("applied", tagMerger.getAppliedCount())
+        );
+    }
+}
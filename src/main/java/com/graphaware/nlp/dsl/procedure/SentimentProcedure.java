@@ -16,6 +16,7 @@
 package com.graphaware.nlp.dsl.procedure;
 
 import com.graphaware.nlp.dsl.AbstractDSL;
+import com.graphaware.nlp.dsl.result.BatchResult;
 import com.graphaware.nlp.dsl.result.SingleResult;
 import org.codehaus.jackson.map.DeserializationConfig;
 import org.neo4j.graphdb.Node;
@@ -24,6 +25,7 @@ import org.neo4j.procedure.Mode;
 import org.neo4j.procedure.Name;
 import org.neo4j.procedure.Procedure;
 
+import java.util.List;
 import java.util.stream.Stream;
 
 public class SentimentProcedure extends AbstractDSL {
@@ -36,4 +38,15 @@ public class SentimentProcedure extends AbstractDSL {
         return Stream.of(SingleResult.success());
     }
 
+    @Procedure(name = "ga.nlp.sentiment.batch", mode = Mode.WRITE)
+    @Description("Apply sentiment extraction on many annotated texts in parallel, only the sentence sentiment labels are written, in batched transactions")
+    public Stream<BatchResult> applySentimentBatch(@Name("annotatedTexts") List<Node> annotatedTexts,
+                                                   @Name(value = "textProcessor", defaultValue = "") String textProcessor,
+                                                   @Name(value = "concurrency", defaultValue = "0") long concurrency,
+                                                   @Name(value = "batchSize", defaultValue = "100") long batchSize) {
+        int threads = concurrency > 0 ? (int) concurrency : Runtime.getRuntime().availableProcessors();
+
+        return getNLPManager().applySentimentInBatch(annotatedTexts, textProcessor, threads, (int) batchSize).stream();
+    }
+
 }
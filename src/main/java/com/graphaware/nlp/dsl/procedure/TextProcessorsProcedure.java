@@ -15,17 +15,23 @@
  */
 package com.graphaware.nlp.dsl.procedure;
 
+import com.google.common.cache.CacheStats;
 import com.graphaware.nlp.dsl.AbstractDSL;
 import com.graphaware.nlp.dsl.request.CustomModelsRequest;
 import com.graphaware.nlp.dsl.request.PipelineSpecification;
+import com.graphaware.nlp.dsl.result.KeyValueResult;
+import com.graphaware.nlp.dsl.result.PipelineStats;
+import com.graphaware.nlp.dsl.result.ProcessorStatus;
 import com.graphaware.nlp.dsl.result.ProcessorsList;
 import com.graphaware.nlp.dsl.result.SingleResult;
+import com.graphaware.nlp.processor.AnnotationCache;
 import com.graphaware.nlp.processor.PipelineInfo;
 import org.neo4j.procedure.Description;
 import org.neo4j.procedure.Mode;
 import org.neo4j.procedure.Name;
 import org.neo4j.procedure.Procedure;
 
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.stream.Stream;
@@ -68,6 +74,41 @@ public class TextProcessorsProcedure extends AbstractDSL {
         return getNLPManager().getPipelineInformations(pipelineName).stream();
     }
 
+    @Procedure("ga.nlp.processor.warmup")
+    @Description("Starts the background initialisation of the given text processors (all of them when empty), waiting up to the given timeout (ms) for them to be ready")
+    public Stream<ProcessorStatus> warmup(@Name(value = "processors", defaultValue = "[]") List<String> processors,
+                                          @Name(value = "timeout", defaultValue = "0") long timeout) {
+        return getNLPManager().warmupProcessors(processors, timeout).stream();
+    }
+
+    @Procedure("ga.nlp.processor.status")
+    @Description("Returns the initialisation state of the text processors: REGISTERED, INITIALISING, READY or FAILED")
+    public Stream<ProcessorStatus> status(@Name(value = "processor", defaultValue = "") String processor) {
+        return getNLPManager().getProcessorStatus(processor).stream();
+    }
+
+    @Procedure("ga.nlp.processor.getPipelineStats")
+    @Description("Returns the load of the execution pool of each pipeline: running and waiting annotations, rejections and queue times (ms)")
+    public Stream<PipelineStats> getPipelineStats(@Name(value = "pipelineName", defaultValue = "") String pipelineName) {
+        return getNLPManager().getPipelineStats(pipelineName).stream();
+    }
+
+    @Procedure("ga.nlp.processor.annotate.cache.stats")
+    @Description("Returns the hit and miss statistics of the annotation cache")
+    public Stream<KeyValueResult> getAnnotationCacheStats() {
+        AnnotationCache cache = getNLPManager().getAnnotationCache();
+        CacheStats stats = cache.stats();
+
+        return Stream.of(
+                new KeyValueResult("size", cache.size()),
+                new KeyValueResult("hitCount", stats.hitCount()),
+                new KeyValueResult("missCount", stats.missCount()),
+                new KeyValueResult("hitRate", stats.hitRate()),
+                new KeyValueResult("evictionCount", stats.evictionCount()),
+                new KeyValueResult("averageLoadPenalty", stats.averageLoadPenalty())
+        );
+    }
+
     @Procedure(name = "ga.nlp.processor.train", mode = Mode.WRITE)
     @Description("Procedure for training custom models.")
     public Stream<SingleResult> train(@Name("customModelsRequest") Map<String, Object> customModelsRequest) {
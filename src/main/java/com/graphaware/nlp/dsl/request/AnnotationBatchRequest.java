@@ -0,0 +1,118 @@
+/*
+ * Copyright (c) 2013-2017 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package com.graphaware.nlp.dsl.request;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static com.graphaware.nlp.dsl.request.RequestConstants.*;
+
+public class AnnotationBatchRequest extends AbstractProcedureRequest {
+
+    private static final int DEFAULT_BATCH_SIZE = 100;
+
+    private String query;
+
+    private List<Map<String, Object>> input = new ArrayList<>();
+
+    private String textProcessor;
+
+    private String pipeline;
+
+    private boolean force;
+
+    private boolean checkLanguage = true;
+
+    private int batchSize = DEFAULT_BATCH_SIZE;
+
+    private int concurrency = Runtime.getRuntime().availableProcessors();
+
+    @Override
+    public List<String> validMapKeys() {
+        return Arrays.asList(
+                QUERY_KEY,
+                INPUT_KEY,
+                TEXT_PROCESSOR_KEY,
+                PIPELINE_KEY,
+                FORCE_KEY,
+                CHECK_LANGUAGE_KEY,
+                BATCH_SIZE_KEY,
+                CONCURRENCY_KEY
+        );
+    }
+
+    public static AnnotationBatchRequest fromMap(Map<String, Object> map) {
+        AnnotationBatchRequest request = mapper.convertValue(map, AnnotationBatchRequest.class);
+        request.validateMap(map);
+        request.validateRequestHasKeyOrOtherKey(QUERY_KEY, INPUT_KEY, map);
+
+        return request;
+    }
+
+    /**
+     * Builds the single text annotation request for a row of the input list or of the query result,
+     * the row is expected to hold the <code>id</code> and <code>text</code> keys.
+     */
+    public AnnotationRequest toAnnotationRequest(Map<String, Object> row) {
+        if (!row.containsKey(ID_KEY) || !row.containsKey(TEXT_KEY)) {
+            throw new RuntimeException(String.format("Each input row should contain the '%s' and '%s' keys", ID_KEY, TEXT_KEY));
+        }
+        Object text = row.get(TEXT_KEY);
+
+        return new AnnotationRequest(text != null ? text.toString() : null, row.get(ID_KEY), textProcessor, pipeline, force, checkLanguage);
+    }
+
+    /**
+     * @return the id of the row used to report its errors, valid or not
+     */
+    public String getRowId(Map<String, Object> row) {
+        return String.valueOf(row.get(ID_KEY));
+    }
+
+    public String getQuery() {
+        return query;
+    }
+
+    public List<Map<String, Object>> getInput() {
+        return input;
+    }
+
+    public String getTextProcessor() {
+        return textProcessor;
+    }
+
+    public String getPipeline() {
+        return pipeline;
+    }
+
+    public boolean isForce() {
+        return force;
+    }
+
+    public boolean isCheckLanguage() {
+        return checkLanguage;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public int getConcurrency() {
+        return concurrency;
+    }
+}
@@ -36,6 +36,10 @@ public class AnnotationRequest extends AbstractProcedureRequest {
 
     private boolean checkLanguage = true;
 
+    private int chunkSize;
+
+    private boolean parallel;
+
     private List<String> annotators = new ArrayList<>();
 
     private List<String> excludedNER = new ArrayList<>();
@@ -64,6 +68,8 @@ public class AnnotationRequest extends AbstractProcedureRequest {
                 PIPELINE_KEY,
                 FORCE_KEY,
                 CHECK_LANGUAGE_KEY,
+                CHUNK_SIZE_KEY,
+                PARALLEL_KEY,
                 ANNOTATORS,
                 EXCLUDED_NER,
                 EXCLUDED_POS
@@ -113,6 +119,18 @@ public class AnnotationRequest extends AbstractProcedureRequest {
         return checkLanguage;
     }
 
+    /**
+     * @return the maximum number of characters annotated and committed at once, 0 to annotate the
+     * whole text in a single transaction
+     */
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    public boolean isParallel() {
+        return parallel;
+    }
+
     public List<String> getAnnotators() {
         return annotators;
     }
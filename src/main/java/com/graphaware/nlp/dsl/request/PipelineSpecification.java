@@ -15,12 +15,15 @@
  */
 package com.graphaware.nlp.dsl.request;
 
+import com.graphaware.nlp.persistence.PersistenceLayer;
+import org.codehaus.jackson.annotate.JsonIgnore;
 import org.codehaus.jackson.annotate.JsonProperty;
 
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 import static com.graphaware.nlp.dsl.request.RequestConstants.*;
@@ -43,6 +46,8 @@ public class PipelineSpecification {
 
     private List<String> excludedPOS = new ArrayList<>();
 
+    private List<String> persistedLayers;
+
     public PipelineSpecification() {
 
     }
@@ -56,6 +61,9 @@ public class PipelineSpecification {
         if (map.containsKey(EXCLUDED_NER)) {
             pipelineSpecification.setExcludedNER((List<String>) map.get(EXCLUDED_NER));
         }
+        if (map.containsKey(PERSISTED_LAYERS)) {
+            pipelineSpecification.setPersistedLayers((List<String>) map.get(PERSISTED_LAYERS));
+        }
 
         return pipelineSpecification;
     }
@@ -140,6 +148,24 @@ public class PipelineSpecification {
         this.excludedPOS = excludedPOS;
     }
 
+    public List<String> getPersistedLayers() {
+        return persistedLayers;
+    }
+
+    public void setPersistedLayers(List<String> persistedLayers) {
+        PersistenceLayer.fromNames(persistedLayers);
+        this.persistedLayers = persistedLayers;
+    }
+
+    /**
+     * Annotation layers stored for the texts annotated with this pipeline, all of them when the
+     * pipeline does not declare its persisted layers.
+     */
+    @JsonIgnore
+    public Set<PersistenceLayer> getPersistenceProfile() {
+        return PersistenceLayer.fromNames(persistedLayers);
+    }
+
     private boolean objectToBoolean(Object obj) {
         boolean result = false;
         if (obj instanceof Boolean)
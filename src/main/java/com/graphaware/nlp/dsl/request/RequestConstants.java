@@ -26,4 +26,9 @@ public final class RequestConstants {
     public static final String ANNOTATORS = "annotators";
     public static final String EXCLUDED_NER = "excludedNER";
     public static final String EXCLUDED_POS = "excludedPOS";
+    public static final String PERSISTED_LAYERS = "persistedLayers";
+    public static final String BATCH_SIZE_KEY = "batchSize";
+    public static final String CONCURRENCY_KEY = "concurrency";
+    public static final String CHUNK_SIZE_KEY = "chunkSize";
+    public static final String PARALLEL_KEY = "parallel";
 }
@@ -0,0 +1,43 @@
+/*
+ * Copyright (c) 2013-2017 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package com.graphaware.nlp.dsl.result;
+
+public class AnnotationQueueStatus {
+
+    public long queueDepth;
+
+    public long inFlight;
+
+    public long completed;
+
+    public long failed;
+
+    public String jobId;
+
+    public String status;
+
+    public String error;
+
+    public AnnotationQueueStatus(long queueDepth, long inFlight, long completed, long failed, String jobId, String status, String error) {
+        this.queueDepth = queueDepth;
+        this.inFlight = inFlight;
+        this.completed = completed;
+        this.failed = failed;
+        this.jobId = jobId;
+        this.status = status;
+        this.error = error;
+    }
+}
@@ -0,0 +1,42 @@
+/*
+ * Copyright (c) 2013-2017 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package com.graphaware.nlp.dsl.result;
+
+import java.util.List;
+
+public class BatchResult {
+
+    public long batch;
+
+    public long processed;
+
+    public long failed;
+
+    public long timeTaken;
+
+    public double throughput;
+
+    public List<String> errors;
+
+    public BatchResult(long batch, long processed, long failed, long timeTaken, List<String> errors) {
+        this.batch = batch;
+        this.processed = processed;
+        this.failed = failed;
+        this.timeTaken = timeTaken;
+        this.throughput = timeTaken > 0 ? (processed * 1000.0d) / timeTaken : processed;
+        this.errors = errors;
+    }
+}
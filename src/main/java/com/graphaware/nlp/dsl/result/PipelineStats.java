@@ -0,0 +1,61 @@
+/*
+ * Copyright (c) 2013-2017 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package com.graphaware.nlp.dsl.result;
+
+public class PipelineStats {
+
+    public String processor;
+
+    public String pipeline;
+
+    public long threads;
+
+    public long active;
+
+    public long queued;
+
+    public long submitted;
+
+    public long completed;
+
+    public long failed;
+
+    public long rejected;
+
+    public double averageQueueTime;
+
+    public long maxQueueTime;
+
+    public long instances;
+
+    public long instancesInUse;
+
+    public double averageLeaseWait;
+
+    public PipelineStats(String processor, String pipeline, long threads, long active, long queued, long submitted, long completed, long failed, long rejected, double averageQueueTime, long maxQueueTime) {
+        this.processor = processor;
+        this.pipeline = pipeline;
+        this.threads = threads;
+        this.active = active;
+        this.queued = queued;
+        this.submitted = submitted;
+        this.completed = completed;
+        this.failed = failed;
+        this.rejected = rejected;
+        this.averageQueueTime = averageQueueTime;
+        this.maxQueueTime = maxQueueTime;
+    }
+}
@@ -0,0 +1,39 @@
+/*
+ * Copyright (c) 2013-2017 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package com.graphaware.nlp.dsl.result;
+
+public class ProcessorStatus {
+
+    public static final String REGISTERED = "REGISTERED";
+    public static final String INITIALISING = "INITIALISING";
+    public static final String READY = "READY";
+    public static final String FAILED = "FAILED";
+
+    public final String processor;
+
+    public final String state;
+
+    public final long initialisationTime;
+
+    public final String error;
+
+    public ProcessorStatus(String processor, String state, long initialisationTime, String error) {
+        this.processor = processor;
+        this.state = state;
+        this.initialisationTime = initialisationTime;
+        this.error = error;
+    }
+}
@@ -0,0 +1,37 @@
+/*
+ * Copyright (c) 2013-2017 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package com.graphaware.nlp.dsl.result;
+
+public class SchemaStatus {
+
+    public final String label;
+
+    public final String property;
+
+    public final boolean indexed;
+
+    public final boolean unique;
+
+    public final String state;
+
+    public SchemaStatus(String label, String property, boolean indexed, boolean unique, String state) {
+        this.label = label;
+        this.property = property;
+        this.indexed = indexed;
+        this.unique = unique;
+        this.state = state;
+    }
+}
@@ -0,0 +1,36 @@
+/*
+ * Copyright (c) 2013-2017 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package com.graphaware.nlp.language;
+
+public class LanguageDetectionResult {
+
+    private final String language;
+
+    private final boolean supported;
+
+    public LanguageDetectionResult(String language, boolean supported) {
+        this.language = language;
+        this.supported = supported;
+    }
+
+    public String getLanguage() {
+        return language;
+    }
+
+    public boolean isSupported() {
+        return supported;
+    }
+}
@@ -16,6 +16,9 @@
 package com.graphaware.nlp.language;
 
 import com.google.common.base.Optional;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.graphaware.nlp.util.HashFunctions;
 import com.optimaize.langdetect.LanguageDetector;
 import com.optimaize.langdetect.LanguageDetectorBuilder;
 import com.optimaize.langdetect.i18n.LdLocale;
@@ -23,15 +26,19 @@ import com.optimaize.langdetect.ngram.NgramExtractors;
 import com.optimaize.langdetect.profiles.LanguageProfile;
 import com.optimaize.langdetect.profiles.LanguageProfileReader;
 import com.optimaize.langdetect.text.CommonTextObjectFactories;
+import com.optimaize.langdetect.text.RemoveMinorityScriptsTextFilter;
 import com.optimaize.langdetect.text.TextObject;
 import com.optimaize.langdetect.text.TextObjectFactory;
+import com.optimaize.langdetect.text.TextObjectFactoryBuilder;
+import com.optimaize.langdetect.text.UrlTextFilter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.util.List;
 import java.util.Set;
-import java.util.TreeSet;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.stream.Collectors;
 
 import static com.graphaware.nlp.domain.Constants.LANGUAGE_EN;
 import static com.graphaware.nlp.domain.Constants.LANGUAGE_NA;
@@ -42,17 +49,28 @@ import static com.graphaware.nlp.domain.Constants.LANGUAGE_NA;
 public class LanguageManager {
 
     private static final Logger LOG = LoggerFactory.getLogger(LanguageManager.class);
-    private boolean initialized = false;
+    private static final int SHORT_TEXT_MAX_LENGTH = 200;
+    private static final int DETECTION_CACHE_SIZE = 10000;
+
+    private volatile boolean initialized = false;
     private LanguageDetector languageDetector;
-    private TextObjectFactory textObjectFactory;
-    
-    private final Set<String> supportedLanguages = new TreeSet<>();
+    private TextObjectFactory largeTextObjectFactory;
+    private TextObjectFactory shortTextObjectFactory;
+
+    private final Set<String> supportedLanguages = new ConcurrentSkipListSet<>();
+
+    private final Cache<String, String> detectionCache = CacheBuilder.newBuilder()
+            .maximumSize(DETECTION_CACHE_SIZE)
+            .build();
 
     private LanguageManager() {
         supportedLanguages.add(LANGUAGE_EN);
     }
 
-    private void initialize() {
+    private synchronized void initialize() {
+        if (initialized) {
+            return;
+        }
         LOG.info("Initializing Language Detector ...");
         try {
             List<LanguageProfile> languageProfiles = new LanguageProfileReader().readAllBuiltIn();
@@ -60,8 +78,12 @@ public class LanguageManager {
             languageDetector = LanguageDetectorBuilder.create(NgramExtractors.standard())
                     .withProfiles(languageProfiles)
                     .build();
-            //create a text object factory
-            textObjectFactory = CommonTextObjectFactories.forDetectingOnLargeText();
+            //create the text object factories, tweets and titles skip the large text truncation
+            largeTextObjectFactory = CommonTextObjectFactories.forDetectingOnLargeText();
+            shortTextObjectFactory = new TextObjectFactoryBuilder()
+                    .withTextFilter(UrlTextFilter.getInstance())
+                    .withTextFilter(RemoveMinorityScriptsTextFilter.forThreshold(0.3))
+                    .build();
             initialized = true;
         } catch (IOException ex) {
             initialized = false;
@@ -78,23 +100,52 @@ public class LanguageManager {
         private static final LanguageManager INSTANCE = new LanguageManager();
     }
 
+    /**
+     * Detects the language of the given text once, the result can be reused for all the checks
+     * made on the same text. Detected languages are cached by text hash.
+     */
+    public LanguageDetectionResult detect(String text) {
+        String language = detectLanguage(text);
+
+        return new LanguageDetectionResult(language, isLanguageSupported(language));
+    }
+
     public String detectLanguage(String text) {
+        if (text == null) {
+            return LANGUAGE_NA;
+        }
+        String key = HashFunctions.MD5(text);
+        String language = detectionCache.getIfPresent(key);
+        if (language == null) {
+            language = doDetectLanguage(text);
+            detectionCache.put(key, language);
+        }
+
+        return language;
+    }
+
+    public List<String> detectLanguages(List<String> texts) {
+        return texts.stream()
+                .map(this::detectLanguage)
+                .collect(Collectors.toList());
+    }
+
+    private String doDetectLanguage(String text) {
         if (!initialized) {
             initialize();
         }
-        if (text != null) {
-            TextObject textObject = textObjectFactory.forText(text);
-            Optional<LdLocale> lang = languageDetector.detect(textObject);
-            if (lang.isPresent()) {
-                return lang.get().getLanguage();
-            }
+        TextObjectFactory factory = text.length() <= SHORT_TEXT_MAX_LENGTH ? shortTextObjectFactory : largeTextObjectFactory;
+        TextObject textObject = factory.forText(text);
+        Optional<LdLocale> lang = languageDetector.detect(textObject);
+        if (lang.isPresent()) {
+            return lang.get().getLanguage();
         }
 
         return LANGUAGE_NA;
     }
-    
+
     public boolean isTextLanguageSupported(String text) {
-        return supportedLanguages.contains(detectLanguage(text));
+        return detect(text).isSupported();
     }
     
     public boolean isLanguageSupported(String language) {
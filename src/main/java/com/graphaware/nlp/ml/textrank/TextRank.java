@@ -18,7 +18,9 @@ package com.graphaware.nlp.ml.textrank;
 import com.graphaware.common.util.Pair;
 import com.graphaware.nlp.NLPManager;
 import com.graphaware.nlp.configuration.DynamicConfiguration;
+import com.graphaware.nlp.domain.AnnotatedText;
 import com.graphaware.nlp.domain.Keyword;
+import com.graphaware.nlp.domain.TagOccurrence;
 import com.graphaware.nlp.domain.TfIdfObject;
 import com.graphaware.nlp.persistence.constants.Labels;
 import com.graphaware.nlp.persistence.persisters.KeywordPersister;
@@ -426,12 +428,6 @@ public class TextRank {
     }
 
     private  Map<Long, List<Pair<Long, Long>>> expandNamedEntities() {
-        Map<String, Object> parameters = new HashMap<>();
-        parameters.put("name", PIPELINE_WITHOUT_NER);
-
-        Map<String, Object> p = new HashMap<>();
-        p.put("params", parameters);
-
         Map<Long, List<Pair<Long, Long>>> result = new HashMap<>();
         Map<Long, String> newIdsToVal = new HashMap<>();
 
@@ -440,21 +436,13 @@ public class TextRank {
                 if (idToValue.get(valueL).trim().split(" ").length < 2)
                     continue;
                 String str = idToValue.get(valueL).toLowerCase().split("_")[0].trim();
-                p.put("text", str);
                 List<Pair<Long, Long>> res = new ArrayList<>();
-                try (Transaction tx = database.beginTx()) {
-                    Result r = database.execute(
-                        "WITH ga.nlp.processor.annotate({text}, {params}) AS annotated\n"
-                        + "with keys(annotated.sentences[0].tagOccurrences) as keys, annotated\n"
-                        + "unwind keys as k\n"
-                        + "with toInteger(k) as kInt, annotated\n"
-                        + "order by kInt asc\n"
-                        + "return kInt as start, annotated.sentences[0].tagOccurrences[toString(kInt)][0].element.id as tagVal"
-                        , p);
-                    while (r.hasNext()) {
-                        Map<String, Object> next = r.next();
-                        Long start = (Long) next.get("start");
-                        String val = (String) next.get("tagVal");
+                AnnotatedText annotated = NLPManager.getInstance().getCachedAnnotation(str, null, PIPELINE_WITHOUT_NER, "en");
+                if (!annotated.getSentences().isEmpty()) {
+                    Map<Integer, List<TagOccurrence>> occurrences = new TreeMap<>(annotated.getSentences().get(0).getTagOccurrences());
+                    for (Map.Entry<Integer, List<TagOccurrence>> occurrence : occurrences.entrySet()) {
+                        Long start = occurrence.getKey().longValue();
+                        String val = occurrence.getValue().get(0).getElement().getId();
                         List<Long> lId = idToValue.entrySet().stream().filter(en -> en.getValue().equals(val) || en.getValue().equalsIgnoreCase(val)).map(Map.Entry::getKey).collect(Collectors.toList());
                         List<Long> lIdNew = newIdsToVal.entrySet().stream().filter(en -> en.getValue().equals(val) || en.getValue().equalsIgnoreCase(val)).map(Map.Entry::getKey).collect(Collectors.toList());
                         if (lId!=null && lId.size()>0) {
@@ -467,8 +455,6 @@ public class TextRank {
                             nextNewId -= 1L;
                         }
                     }
-                    r.close();
-                    tx.success();
                 }
                 if (res.size() > 0)
                     result.put(valueL, res); // map: id(NE) -> ListOfIndividualTags(Pair(startPostion, tagId))
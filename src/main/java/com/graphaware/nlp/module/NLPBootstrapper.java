@@ -22,6 +22,8 @@ import com.graphaware.runtime.module.RuntimeModuleBootstrapper;
 import org.neo4j.graphdb.GraphDatabaseService;
 import org.neo4j.logging.Log;
 
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Map;
 
 /**
@@ -33,6 +35,7 @@ public class NLPBootstrapper extends BaseRuntimeModuleBootstrapper<NLPConfigurat
 
     private static final String CONCEPT_NET_URL = "conceptNetUrl";
     private static final String SPARK_REST_URL = "sparkRestUrl";
+    private static final String WARMUP_PROCESSORS = "warmupProcessors";
 
     /**
      * {@inheritDoc}
@@ -56,6 +59,14 @@ public class NLPBootstrapper extends BaseRuntimeModuleBootstrapper<NLPConfigurat
             configuration = configuration.withSparkRestUrl(config.get(SPARK_REST_URL));
             LOG.info("SPARK_REST_URL set to %s", configuration.getSparkRestUrl());
         }
+
+        if (config.get(WARMUP_PROCESSORS) != null && config.get(WARMUP_PROCESSORS).length() > 0) {
+            String warmupProcessors = config.get(WARMUP_PROCESSORS).trim();
+            configuration = configuration.withWarmupProcessors(warmupProcessors.equals("*")
+                    ? Collections.emptyList()
+                    : Arrays.asList(warmupProcessors.split("\\s*,\\s*")));
+            LOG.info("WARMUP_PROCESSORS set to %s", warmupProcessors);
+        }
         return new NLPModule(moduleId, configuration, database);
     }
 }
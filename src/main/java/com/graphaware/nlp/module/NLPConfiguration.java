@@ -20,6 +20,8 @@ import com.graphaware.common.policy.inclusion.none.IncludeNoRelationships;
 import com.graphaware.runtime.config.BaseTxDrivenModuleConfiguration;
 import com.graphaware.runtime.policy.InclusionPoliciesFactory;
 
+import java.util.List;
+
 
 public class NLPConfiguration extends BaseTxDrivenModuleConfiguration<NLPConfiguration> {
 
@@ -29,11 +31,17 @@ public class NLPConfiguration extends BaseTxDrivenModuleConfiguration<NLPConfigu
     
     private final String conceptNetUrl;
     private final String sparkRestUrl;
+    private final List<String> warmupProcessors;
 
     public NLPConfiguration(InclusionPolicies inclusionPolicies,  long initializeUntil, String conceptNetUrl, String sparkRestUrl) {
+        this(inclusionPolicies, initializeUntil, conceptNetUrl, sparkRestUrl, null);
+    }
+
+    public NLPConfiguration(InclusionPolicies inclusionPolicies,  long initializeUntil, String conceptNetUrl, String sparkRestUrl, List<String> warmupProcessors) {
         super(inclusionPolicies, initializeUntil);
         this.conceptNetUrl = conceptNetUrl;
         this.sparkRestUrl = sparkRestUrl;
+        this.warmupProcessors = warmupProcessors;
     }
 
     public static NLPConfiguration defaultConfiguration() {
@@ -50,7 +58,7 @@ public class NLPConfiguration extends BaseTxDrivenModuleConfiguration<NLPConfigu
      */
     @Override
     protected NLPConfiguration newInstance(InclusionPolicies inclusionPolicies, long initializeUntil) {
-        return new NLPConfiguration(inclusionPolicies, initializeUntil, getConceptNetUrl(), getSparkRestUrl());
+        return new NLPConfiguration(inclusionPolicies, initializeUntil, getConceptNetUrl(), getSparkRestUrl(), getWarmupProcessors());
     }
 
     public String getConceptNetUrl() {
@@ -62,11 +70,23 @@ public class NLPConfiguration extends BaseTxDrivenModuleConfiguration<NLPConfigu
     }
     
     public NLPConfiguration withConceptNetUrl(String conceptNetUrl) {
-        return new NLPConfiguration(getInclusionPolicies(), initializeUntil(), conceptNetUrl, getSparkRestUrl());
+        return new NLPConfiguration(getInclusionPolicies(), initializeUntil(), conceptNetUrl, getSparkRestUrl(), getWarmupProcessors());
     }
     
     public NLPConfiguration withSparkRestUrl(String sparkRestUrl) {
-        return new NLPConfiguration(getInclusionPolicies(), initializeUntil(), getConceptNetUrl(), sparkRestUrl);
+        return new NLPConfiguration(getInclusionPolicies(), initializeUntil(), getConceptNetUrl(), sparkRestUrl, getWarmupProcessors());
+    }
+
+    /**
+     * @return the processors initialised in background at startup, an empty list for all of them,
+     * null for none
+     */
+    public List<String> getWarmupProcessors() {
+        return warmupProcessors;
+    }
+
+    public NLPConfiguration withWarmupProcessors(List<String> warmupProcessors) {
+        return new NLPConfiguration(getInclusionPolicies(), initializeUntil(), getConceptNetUrl(), getSparkRestUrl(), warmupProcessors);
     }
 
     /**
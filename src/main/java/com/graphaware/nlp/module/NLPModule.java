@@ -52,6 +52,14 @@ public class NLPModule extends BaseTxDrivenModule<Void> {
         nlpManager.init(database, nlpMLConfiguration);
     }
 
+    @Override
+    public void shutdown() {
+        if (nlpManager != null) {
+            nlpManager.shutdown();
+        }
+        super.shutdown();
+    }
+
     public NLPConfiguration getNlpMLConfiguration() {
         return nlpMLConfiguration;
     }
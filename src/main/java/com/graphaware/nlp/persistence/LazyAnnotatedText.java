@@ -0,0 +1,148 @@
+/*
+ * Copyright (c) 2013-2017 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package com.graphaware.nlp.persistence;
+
+import com.graphaware.nlp.configuration.DynamicConfiguration;
+import com.graphaware.nlp.domain.AnnotatedText;
+import com.graphaware.nlp.domain.Sentence;
+import com.graphaware.nlp.persistence.constants.Properties;
+import com.graphaware.nlp.persistence.constants.Relationships;
+import com.graphaware.nlp.persistence.persisters.AnnotatedTextPersister;
+import com.graphaware.nlp.persistence.persisters.SentencePersister;
+import org.neo4j.graphdb.Direction;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Relationship;
+import org.neo4j.graphdb.RelationshipType;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Annotated document read from its node on access. Sentences are {@link LazySentence}s, listed on the
+ * first call to {@link #getSentences()} or walked one at a time through {@link #sentenceIterator()}.
+ * Must be used from a transaction.
+ */
+public class LazyAnnotatedText extends AnnotatedText {
+
+    private final Node node;
+
+    private final DynamicConfiguration configuration;
+
+    private final AnnotatedTextPersister annotatedTextPersister;
+
+    private final SentencePersister sentencePersister;
+
+    private List<Sentence> sentences;
+
+    public LazyAnnotatedText(Node node, DynamicConfiguration configuration, AnnotatedTextPersister annotatedTextPersister, SentencePersister sentencePersister) {
+        this.node = node;
+        this.configuration = configuration;
+        this.annotatedTextPersister = annotatedTextPersister;
+        this.sentencePersister = sentencePersister;
+    }
+
+    public Node getNode() {
+        return node;
+    }
+
+    @Override
+    public String getText() {
+        String text = super.getText();
+
+        return text != null ? text : annotatedTextPersister.getText(node);
+    }
+
+    @Override
+    public String getPipeline() {
+        String pipeline = super.getPipeline();
+
+        return pipeline != null ? pipeline : (String) node.getProperty(configuration.getPropertyKeyFor(Properties.PIPELINE), null);
+    }
+
+    @Override
+    public int getNumTerms() {
+        return ((Number) node.getProperty(configuration.getPropertyKeyFor(Properties.NUM_TERMS), 0)).intValue();
+    }
+
+    @Override
+    public List<Sentence> getSentences() {
+        if (sentences == null) {
+            List<Sentence> loaded = new ArrayList<>();
+            for (Relationship relationship : node.getRelationships(configuration.getRelationshipFor(Relationships.CONTAINS_SENTENCE), Direction.OUTGOING)) {
+                loaded.add(toSentence(relationship.getEndNode()));
+            }
+            loaded.sort(Comparator.comparingInt(Sentence::getSentenceNumber));
+            sentences = loaded;
+        }
+
+        return sentences;
+    }
+
+    @Override
+    public List<Sentence> getSentencesSorted() {
+        return getSentences();
+    }
+
+    @Override
+    public void addSentence(Sentence sentence) {
+        throw new UnsupportedOperationException("Sentences of a stored text cannot be added");
+    }
+
+    /**
+     * Walks the sentences in order along the NEXT_SENTENCE chain, without keeping them.
+     */
+    public Iterator<Sentence> sentenceIterator() {
+        if (sentences != null) {
+            return sentences.iterator();
+        }
+        Relationship first = node.getSingleRelationship(configuration.getRelationshipFor(Relationships.FIRST_SENTENCE), Direction.OUTGOING);
+        if (first == null) {
+            return getSentences().iterator();
+        }
+        RelationshipType next = configuration.getRelationshipFor(Relationships.NEXT_SENTENCE);
+
+        return new Iterator<Sentence>() {
+
+            private Node current = first.getEndNode();
+
+            @Override
+            public boolean hasNext() {
+                return current != null;
+            }
+
+            @Override
+            public Sentence next() {
+                if (current == null) {
+                    throw new NoSuchElementException();
+                }
+                Sentence sentence = toSentence(current);
+                Relationship relationship = current.getSingleRelationship(next, Direction.OUTGOING);
+                current = relationship != null ? relationship.getEndNode() : null;
+
+                return sentence;
+            }
+        };
+    }
+
+    private Sentence toSentence(Node sentenceNode) {
+        int sentenceNumber = ((Number) sentenceNode.getProperty(configuration.getPropertyKeyFor(Properties.SENTENCE_NUMBER))).intValue();
+
+        return new LazySentence(sentenceNode, sentenceNumber, configuration, sentencePersister);
+    }
+}
@@ -0,0 +1,179 @@
+/*
+ * Copyright (c) 2013-2017 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package com.graphaware.nlp.persistence;
+
+import com.graphaware.nlp.configuration.DynamicConfiguration;
+import com.graphaware.nlp.domain.PartOfTextOccurrence;
+import com.graphaware.nlp.domain.Sentence;
+import com.graphaware.nlp.domain.Tag;
+import com.graphaware.nlp.domain.TagOccurrence;
+import com.graphaware.nlp.persistence.constants.Properties;
+import com.graphaware.nlp.persistence.constants.Relationships;
+import com.graphaware.nlp.persistence.persisters.SentencePersister;
+import com.graphaware.nlp.util.SentenceUtils;
+import org.neo4j.graphdb.Direction;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Relationship;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Sentence read from its node on access: the text, sentiment, tags and tag occurrences are each loaded
+ * the first time they are requested, with direct property reads. Typed dependencies and phrases are
+ * not loaded and {@link #shift(int, int)} is not supported. Must be used from a transaction.
+ */
+public class LazySentence extends Sentence {
+
+    private final Node node;
+
+    private final DynamicConfiguration configuration;
+
+    private final SentencePersister persister;
+
+    private String text;
+
+    private boolean sentimentLoaded = false;
+
+    private boolean tagsLoaded = false;
+
+    private boolean occurrencesLoaded = false;
+
+    public LazySentence(Node node, int sentenceNumber, DynamicConfiguration configuration, SentencePersister persister) {
+        super(null, sentenceNumber);
+        this.node = node;
+        this.configuration = configuration;
+        this.persister = persister;
+    }
+
+    public Node getNode() {
+        return node;
+    }
+
+    @Override
+    public String getSentence() {
+        if (text == null) {
+            text = persister.getText(node);
+        }
+
+        return text;
+    }
+
+    @Override
+    public String hash() {
+        return String.valueOf(node.getProperty(configuration.getPropertyKeyFor(Properties.HASH)));
+    }
+
+    @Override
+    public int getSentiment() {
+        if (!sentimentLoaded) {
+            for (int level : SentenceUtils.SENTIMENT_LEVELS) {
+                if (node.hasLabel(configuration.getLabelFor(SentenceUtils.getDefaultLabelForSentimentLevel(level)))) {
+                    super.setSentiment(level);
+                }
+            }
+            sentimentLoaded = true;
+        }
+
+        return super.getSentiment();
+    }
+
+    @Override
+    public void setSentiment(int sentiment) {
+        sentimentLoaded = true;
+        super.setSentiment(sentiment);
+    }
+
+    /**
+     * Not supported, the text and the annotations of a stored sentence are not held by this view.
+     */
+    @Override
+    public Sentence shift(int sentenceOffset, int charOffset) {
+        throw new UnsupportedOperationException("A stored sentence cannot be shifted");
+    }
+
+    @Override
+    public Collection<Tag> getTags() {
+        loadTags();
+
+        return super.getTags();
+    }
+
+    @Override
+    public Tag getTag(String k) {
+        loadTags();
+
+        return super.getTag(k);
+    }
+
+    @Override
+    public Map<Integer, List<TagOccurrence>> getTagOccurrences() {
+        loadOccurrences();
+
+        return super.getTagOccurrences();
+    }
+
+    @Override
+    public Tag getTagOccurrence(int begin) {
+        loadOccurrences();
+
+        return super.getTagOccurrence(begin);
+    }
+
+    @Override
+    public PartOfTextOccurrence<Tag> getTagOccurrenceByTagValue(String value) {
+        loadOccurrences();
+
+        return super.getTagOccurrenceByTagValue(value);
+    }
+
+    private void loadTags() {
+        if (tagsLoaded) {
+            return;
+        }
+        tagsLoaded = true;
+        String tfKey = configuration.getPropertyKeyFor(Properties.TF);
+        for (Relationship relationship : node.getRelationships(configuration.getRelationshipFor(Relationships.HAS_TAG), Direction.OUTGOING)) {
+            Tag tag = toTag(relationship.getEndNode());
+            tag.setMultiplicity(((Number) relationship.getProperty(tfKey, 1)).intValue());
+            super.addTag(tag);
+        }
+    }
+
+    private void loadOccurrences() {
+        if (occurrencesLoaded) {
+            return;
+        }
+        occurrencesLoaded = true;
+        for (Map<String, Object> occurrence : persister.getOccurrences(node)) {
+            Tag tag = toTag((Node) occurrence.get("tag"));
+            tag.setPos((List<String>) occurrence.get("pos"));
+            tag.setNe((List<String>) occurrence.get("ne"));
+            super.addTagOccurrence((int) occurrence.get("begin"), (int) occurrence.get("end"), (String) occurrence.get("value"), tag);
+        }
+    }
+
+    private Tag toTag(Node tagNode) {
+        Tag tag = new Tag(String.valueOf(tagNode.getProperty(configuration.getPropertyKeyFor(Properties.CONTENT_VALUE))),
+                String.valueOf(tagNode.getProperty(configuration.getPropertyKeyFor(Properties.LANGUAGE))));
+        tag.setPos(Arrays.asList((String[]) tagNode.getProperty(configuration.getPropertyKeyFor(Properties.PART_OF_SPEECH), new String[0])));
+        tag.setNe(Arrays.asList((String[]) tagNode.getProperty(configuration.getPropertyKeyFor(Properties.NAMED_ENTITY), new String[0])));
+
+        return tag;
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright (c) 2013-2017 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package com.graphaware.nlp.persistence;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Label;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.NotFoundException;
+
+import java.util.Objects;
+
+/**
+ * Bounded cache of node ids by natural key (label, property key, property value), shared by the
+ * persisters. Entries are never trusted blindly: a cached node is used only if it still exists, has
+ * the label and holds the value, so nodes deleted, rolled back or with a reused id are evicted on
+ * the next lookup.
+ */
+public class NodeIdCache {
+
+    private static final int CONCURRENCY_LEVEL = 16;
+
+    private final Cache<Key, Long> cache;
+
+    public NodeIdCache(long maximumSize) {
+        this.cache = CacheBuilder.newBuilder()
+                .maximumSize(maximumSize)
+                .concurrencyLevel(CONCURRENCY_LEVEL)
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * @return the cached node, or null when not cached or no longer matching the key
+     */
+    public Node get(GraphDatabaseService database, Label label, String key, Object value) {
+        Key cacheKey = new Key(label.name(), key, value);
+        Long id = cache.getIfPresent(cacheKey);
+        if (id == null) {
+            return null;
+        }
+        try {
+            Node node = database.getNodeById(id);
+            if (node.hasLabel(label) && Objects.equals(value, node.getProperty(key, null))) {
+                return node;
+            }
+        } catch (NotFoundException e) {
+            // deleted or never committed
+        }
+        cache.invalidate(cacheKey);
+
+        return null;
+    }
+
+    public void put(Label label, String key, Object value, Node node) {
+        cache.put(new Key(label.name(), key, value), node.getId());
+    }
+
+    public void invalidate(Label label, String key, Object value) {
+        cache.invalidate(new Key(label.name(), key, value));
+    }
+
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    public long size() {
+        return cache.size();
+    }
+
+    public CacheStats stats() {
+        return cache.stats();
+    }
+
+    private static class Key {
+
+        private final String label;
+        private final String key;
+        private final Object value;
+
+        Key(String label, String key, Object value) {
+            this.label = label;
+            this.key = key;
+            this.value = value;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            Key other = (Key) o;
+
+            return label.equals(other.label) && key.equals(other.key) && Objects.equals(value, other.value);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(label, key, value);
+        }
+    }
+}
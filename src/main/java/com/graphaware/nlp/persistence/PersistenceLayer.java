@@ -0,0 +1,66 @@
+/*
+ * Copyright (c) 2013-2017 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package com.graphaware.nlp.persistence;
+
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * Annotation layers stored for a sentence, a pipeline can restrict them with its persisted layers.
+ */
+public enum PersistenceLayer {
+    /**
+     * HAS_TAG relationships between the sentence and its tags
+     */
+    TAGS,
+    /**
+     * Tag occurrences of the sentence, as nodes or packed on the sentence
+     */
+    OCCURRENCES,
+    /**
+     * Typed dependencies between the tag occurrences, requires OCCURRENCES
+     */
+    DEPENDENCIES,
+    /**
+     * Phrases and phrase occurrences
+     */
+    PHRASES,
+    /**
+     * Sentiment label of the sentence
+     */
+    SENTIMENT;
+
+    public static Set<PersistenceLayer> all() {
+        return EnumSet.allOf(PersistenceLayer.class);
+    }
+
+    public static Set<PersistenceLayer> fromNames(Collection<String> names) {
+        if (names == null) {
+            return all();
+        }
+        Set<PersistenceLayer> layers = EnumSet.noneOf(PersistenceLayer.class);
+        for (String name : names) {
+            try {
+                layers.add(PersistenceLayer.valueOf(name.toUpperCase()));
+            } catch (IllegalArgumentException e) {
+                throw new RuntimeException("Unknown persistence layer " + name + ", expected one of " + all());
+            }
+        }
+
+        return layers;
+    }
+}
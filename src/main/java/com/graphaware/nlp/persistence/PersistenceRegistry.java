@@ -29,8 +29,12 @@ import java.util.Map;
 
 public class PersistenceRegistry {
 
+    private static final long NODE_ID_CACHE_SIZE = 200_000L;
+
     private final Map<Class, Persister> registeredPersisters = new HashMap<>();
 
+    private final NodeIdCache nodeIdCache = new NodeIdCache(NODE_ID_CACHE_SIZE);
+
     public PersistenceRegistry(GraphDatabaseService databaseService, DynamicConfiguration configuration) {
         register(Tag.class, new TagPersister(databaseService, configuration, this));
         register(Sentence.class, new SentencePersister(databaseService, configuration, this));
@@ -47,4 +51,8 @@ public class PersistenceRegistry {
         return registeredPersisters.get(clazz);
     }
 
+    public NodeIdCache getNodeIdCache() {
+        return nodeIdCache;
+    }
+
 }
@@ -0,0 +1,213 @@
+/*
+ * Copyright (c) 2013-2017 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package com.graphaware.nlp.persistence;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.graphaware.nlp.configuration.ConfigurationSnapshot;
+import com.graphaware.nlp.configuration.DynamicConfiguration;
+import com.graphaware.nlp.dsl.result.SchemaStatus;
+import com.graphaware.nlp.persistence.constants.Labels;
+import com.graphaware.nlp.persistence.constants.Properties;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Label;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.graphdb.schema.ConstraintDefinition;
+import org.neo4j.graphdb.schema.ConstraintType;
+import org.neo4j.graphdb.schema.IndexDefinition;
+import org.neo4j.graphdb.schema.Schema;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Makes sure that every node lookup of the persisters is backed by an index, using the labels and
+ * property keys mapped in the {@link DynamicConfiguration}. Schema changes cannot share a transaction
+ * with data changes, so they run on their own thread.
+ */
+public class SchemaManager {
+
+    private static final Logger LOG = LoggerFactory.getLogger(SchemaManager.class);
+
+    public static final String MISSING = "MISSING";
+
+    private final GraphDatabaseService database;
+
+    private final DynamicConfiguration configuration;
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(new ThreadFactoryBuilder()
+            .setNameFormat("nlp-schema-%d")
+            .setDaemon(true)
+            .build());
+
+    private Map<String, Object> mappings;
+
+    public SchemaManager(GraphDatabaseService database, DynamicConfiguration configuration) {
+        this.database = database;
+        this.configuration = configuration;
+        this.mappings = getMappings(configuration.getSnapshot());
+        configuration.addListener(this::onConfigurationChange);
+    }
+
+    public Future<?> ensureSchemaAsync() {
+        return executor.submit(this::ensureSchema);
+    }
+
+    /**
+     * Creates the missing indexes and uniqueness constraints, must not be called from a transaction
+     * holding data changes.
+     */
+    public void ensureSchema() {
+        for (LookupKey lookupKey : getLookupKeys()) {
+            try {
+                ensureIndexed(lookupKey);
+            } catch (Exception e) {
+                LOG.error("Could not create the index on :" + lookupKey.label.name() + "(" + lookupKey.property + ")", e);
+            }
+        }
+    }
+
+    /**
+     * Indexes the lookup keys again once a change of the label or property key mappings is committed.
+     */
+    private synchronized void onConfigurationChange(ConfigurationSnapshot snapshot) {
+        Map<String, Object> current = getMappings(snapshot);
+        if (!current.equals(mappings)) {
+            mappings = current;
+            ensureSchemaAsync();
+        }
+    }
+
+    private static Map<String, Object> getMappings(ConfigurationSnapshot snapshot) {
+        Map<String, Object> mappings = new HashMap<>();
+        snapshot.getValues().forEach((key, value) -> {
+            if (DynamicConfiguration.isMappingKey(key)) {
+                mappings.put(key, value);
+            }
+        });
+
+        return mappings;
+    }
+
+    public List<SchemaStatus> getStatus() {
+        List<SchemaStatus> status = new ArrayList<>();
+        try (Transaction tx = database.beginTx()) {
+            Schema schema = database.schema();
+            getLookupKeys().forEach(lookupKey -> {
+                IndexDefinition index = findIndex(schema, lookupKey);
+                boolean unique = findUniqueConstraint(schema, lookupKey);
+                status.add(new SchemaStatus(lookupKey.label.name(), lookupKey.property, index != null, unique,
+                        index != null ? schema.getIndexState(index).name() : MISSING));
+            });
+            tx.success();
+        }
+
+        return status;
+    }
+
+    private void ensureIndexed(LookupKey lookupKey) {
+        try (Transaction tx = database.beginTx()) {
+            Schema schema = database.schema();
+            if (findIndex(schema, lookupKey) != null) {
+                tx.success();
+                return;
+            }
+            tx.success();
+        }
+        if (lookupKey.unique && createUniqueConstraint(lookupKey)) {
+            return;
+        }
+        try (Transaction tx = database.beginTx()) {
+            database.schema().indexFor(lookupKey.label).on(lookupKey.property).create();
+            tx.success();
+        }
+        LOG.info("Created index on :" + lookupKey.label.name() + "(" + lookupKey.property + ")");
+    }
+
+    private boolean createUniqueConstraint(LookupKey lookupKey) {
+        try (Transaction tx = database.beginTx()) {
+            database.schema().constraintFor(lookupKey.label).assertPropertyIsUnique(lookupKey.property).create();
+            tx.success();
+        } catch (Exception e) {
+            // existing duplicates, the lookups still get a plain index
+            LOG.warn("Could not create the uniqueness constraint on :" + lookupKey.label.name() + "(" + lookupKey.property + "): " + e.getMessage());
+            return false;
+        }
+        LOG.info("Created uniqueness constraint on :" + lookupKey.label.name() + "(" + lookupKey.property + ")");
+
+        return true;
+    }
+
+    private IndexDefinition findIndex(Schema schema, LookupKey lookupKey) {
+        for (IndexDefinition index : schema.getIndexes(lookupKey.label)) {
+            List<String> keys = new ArrayList<>();
+            index.getPropertyKeys().forEach(keys::add);
+            if (keys.size() == 1 && keys.get(0).equals(lookupKey.property)) {
+                return index;
+            }
+        }
+
+        return null;
+    }
+
+    private boolean findUniqueConstraint(Schema schema, LookupKey lookupKey) {
+        for (ConstraintDefinition constraint : schema.getConstraints(lookupKey.label)) {
+            if (constraint.isConstraintType(ConstraintType.UNIQUENESS)) {
+                List<String> keys = new ArrayList<>();
+                constraint.getPropertyKeys().forEach(keys::add);
+                if (keys.size() == 1 && keys.get(0).equals(lookupKey.property)) {
+                    return true;
+                }
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * The keys looked up by the persisters, AnnotatedText and Keyword lookups use the unmapped id key.
+     * Sentence ids are not unique while the sentences of a re-annotated text are renumbered.
+     */
+    private List<LookupKey> getLookupKeys() {
+        return Arrays.asList(
+                new LookupKey(configuration.getLabelFor(Labels.Tag), configuration.getPropertyKeyFor(Properties.PROPERTY_ID), true),
+                new LookupKey(configuration.getLabelFor(Labels.AnnotatedText), Properties.PROPERTY_ID, true),
+                new LookupKey(configuration.getLabelFor(Labels.Sentence), configuration.getPropertyKeyFor(Properties.PROPERTY_ID), false),
+                new LookupKey(configuration.getLabelFor(Labels.Phrase), configuration.getPropertyKeyFor(Properties.CONTENT_VALUE), false),
+                new LookupKey(configuration.getLabelFor(Labels.Keyword), Properties.PROPERTY_ID, false)
+        );
+    }
+
+    private static class LookupKey {
+
+        private final Label label;
+        private final String property;
+        private final boolean unique;
+
+        LookupKey(Label label, String property, boolean unique) {
+            this.label = label;
+            this.property = property;
+            this.unique = unique;
+        }
+    }
+}
@@ -0,0 +1,210 @@
+/*
+ * Copyright (c) 2013-2017 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package com.graphaware.nlp.persistence;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.graphaware.nlp.domain.Tag;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.NotFoundException;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.graphdb.event.TransactionData;
+import org.neo4j.graphdb.event.TransactionEventHandler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+import java.util.function.BinaryOperator;
+
+/**
+ * Accumulates the changes to existing tag nodes, new part of speech, named entities or extra
+ * properties, and applies them from a background thread so that annotation transactions do not lock
+ * the tags shared by all the documents. Changes are only queued once the annotation transaction
+ * commits, pending changes of the same tag are merged and applied in small transactions ordered by
+ * node id.
+ */
+public class TagMerger {
+
+    private static final Logger LOG = LoggerFactory.getLogger(TagMerger.class);
+
+    private static final int BATCH_SIZE = 100;
+
+    private static final long MERGE_INTERVAL_MS = 200;
+
+    private final GraphDatabaseService database;
+
+    private final BinaryOperator<Tag> merge;
+
+    private final BiConsumer<Node, Tag> apply;
+
+    private final Map<Long, Tag> pending = new HashMap<>();
+
+    private final ThreadLocal<Map<Long, Tag>> staged = ThreadLocal.withInitial(HashMap::new);
+
+    private final TransactionEventHandler<Void> commitHandler = new TransactionEventHandler.Adapter<Void>() {
+        @Override
+        public void afterCommit(TransactionData data, Void state) {
+            Map<Long, Tag> changes = staged.get();
+            if (changes.isEmpty()) {
+                return;
+            }
+            synchronized (pending) {
+                changes.forEach((nodeId, tag) -> pending.merge(nodeId, tag, merge));
+            }
+            changes.clear();
+            start();
+        }
+
+        @Override
+        public void afterRollback(TransactionData data, Void state) {
+            staged.get().clear();
+        }
+    };
+
+    private final AtomicLong applied = new AtomicLong();
+
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+            .setNameFormat("nlp-tag-merger-%d")
+            .setDaemon(true)
+            .build());
+
+    private volatile boolean started = false;
+
+    private volatile boolean registered = false;
+
+    public TagMerger(GraphDatabaseService database, BinaryOperator<Tag> merge, BiConsumer<Node, Tag> apply) {
+        this.database = database;
+        this.merge = merge;
+        this.apply = apply;
+    }
+
+    /**
+     * Stages the change of a tag in the current transaction, it is queued when the transaction
+     * commits and dropped if it rolls back.
+     */
+    public void submit(long nodeId, Tag tag) {
+        register();
+        staged.get().merge(nodeId, tag, merge);
+    }
+
+    /**
+     * Applies the pending changes, must not be called from a transaction holding data changes.
+     */
+    public synchronized void flush() {
+        TreeMap<Long, Tag> changes;
+        synchronized (pending) {
+            if (pending.isEmpty()) {
+                return;
+            }
+            changes = new TreeMap<>(pending);
+            pending.clear();
+        }
+        Iterator<Map.Entry<Long, Tag>> iterator = changes.entrySet().iterator();
+        while (iterator.hasNext()) {
+            try (Transaction tx = database.beginTx()) {
+                for (int i = 0; i < BATCH_SIZE && iterator.hasNext(); ++i) {
+                    Map.Entry<Long, Tag> change = iterator.next();
+                    Node node;
+                    try {
+                        node = database.getNodeById(change.getKey());
+                    } catch (NotFoundException e) {
+                        continue;
+                    }
+                    tx.acquireWriteLock(node);
+                    apply.accept(node, change.getValue());
+                    applied.incrementAndGet();
+                }
+                tx.success();
+            }
+        }
+    }
+
+    public int getPendingCount() {
+        synchronized (pending) {
+            return pending.size();
+        }
+    }
+
+    public long getAppliedCount() {
+        return applied.get();
+    }
+
+    /**
+     * Stops the background merger and applies the changes still pending, the database must still be
+     * available.
+     */
+    public void shutdown() {
+        synchronized (executor) {
+            executor.shutdown();
+        }
+        try {
+            if (!executor.awaitTermination(10, TimeUnit.SECONDS)) {
+                LOG.warn("The tag merger did not stop in time");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flushQuietly();
+        if (registered) {
+            database.unregisterTransactionEventHandler(commitHandler);
+            registered = false;
+        }
+    }
+
+    private void register() {
+        if (registered) {
+            return;
+        }
+        synchronized (commitHandler) {
+            if (!registered) {
+                database.registerTransactionEventHandler(commitHandler);
+                registered = true;
+            }
+        }
+    }
+
+    private void start() {
+        if (started) {
+            return;
+        }
+        synchronized (executor) {
+            if (executor.isShutdown()) {
+                LOG.warn("The tag merger is stopped, " + getPendingCount() + " tag changes are not applied");
+                return;
+            }
+            if (!started) {
+                executor.scheduleWithFixedDelay(this::flushQuietly, MERGE_INTERVAL_MS, MERGE_INTERVAL_MS, TimeUnit.MILLISECONDS);
+                started = true;
+            }
+        }
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (Exception e) {
+            LOG.error("Could not apply the pending tag changes", e);
+        }
+    }
+}
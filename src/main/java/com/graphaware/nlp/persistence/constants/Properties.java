@@ -43,6 +43,25 @@ public final class Properties {
     public static final String NAMED_ENTITY_PREFIX = "NER_";
     public static final String PART_OF_SPEECH = "pos";
     public static final String LAST_TX_ID = "lastTxId";
+    public static final String PIPELINE = "pipeline";
+    public static final String TEXT_PROCESSOR = "textProcessor";
+    public static final String PIPELINE_FINGERPRINT = "pipelineFingerprint";
+    public static final String RELATION_TYPE = "type";
+    public static final String RELATION_WEIGHT = "weight";
+    public static final String RELATION_SOURCE = "source";
+    public static final String SENTENCE_TEXT_BEGIN = "textBegin";
+    public static final String SENTENCE_TEXT_END = "textEnd";
+    public static final String COMPRESSED_TEXT = "compressedText";
+    public static final String PACKED_BEGIN = "occurrenceBegin";
+    public static final String PACKED_END = "occurrenceEnd";
+    public static final String PACKED_TAG = "occurrenceTag";
+    public static final String PACKED_VALUE = "occurrenceValue";
+    public static final String PACKED_POS = "occurrencePos";
+    public static final String PACKED_NE = "occurrenceNe";
+    public static final String PACKED_DEPENDENCY_SOURCE = "dependencySource";
+    public static final String PACKED_DEPENDENCY_TARGET = "dependencyTarget";
+    public static final String PACKED_DEPENDENCY_TYPE = "dependencyType";
+    public static final String PACKED_DEPENDENCY_SPECIFIC = "dependencySpecific";
 
     /**
      * Private constructor to prevent people from instantiating this class - it's not meant to be instantiated.
@@ -0,0 +1,358 @@
+/*
+ * Copyright (c) 2013-2017 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package com.graphaware.nlp.persistence.importer;
+
+import com.graphaware.common.log.LoggerFactory;
+import com.graphaware.nlp.configuration.DynamicConfiguration;
+import com.graphaware.nlp.domain.AnnotatedText;
+import com.graphaware.nlp.domain.Sentence;
+import com.graphaware.nlp.domain.Tag;
+import com.graphaware.nlp.domain.TagOccurrence;
+import com.graphaware.nlp.dsl.request.PipelineSpecification;
+import com.graphaware.nlp.persistence.constants.Labels;
+import com.graphaware.nlp.persistence.constants.Properties;
+import com.graphaware.nlp.persistence.constants.Relationships;
+import com.graphaware.nlp.processor.TextProcessor;
+import com.graphaware.nlp.util.HashFunctions;
+import com.graphaware.nlp.util.ProcessorUtils;
+import com.graphaware.nlp.util.SentenceUtils;
+import com.graphaware.nlp.util.ServiceLoader;
+import com.graphaware.nlp.util.TagUtils;
+import com.graphaware.nlp.util.TypeConverter;
+import org.codehaus.jackson.map.ObjectMapper;
+import org.neo4j.graphdb.Label;
+import org.neo4j.logging.Log;
+import org.neo4j.unsafe.batchinsert.BatchInserter;
+import org.neo4j.unsafe.batchinsert.BatchInserters;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Offline import of a corpus into a new store. Documents are annotated in parallel, one text processor
+ * instance per worker, and written in order by a single thread through the batch inserter, bypassing
+ * transactions. Tags are deduplicated in memory, their part of speech and named entities are merged
+ * across documents and written when the importer is closed.
+ *
+ * Only AnnotatedText, Sentence, Tag and TagOccurrence nodes are written, the indexes and constraints are
+ * created by the NLP module when the database is first started.
+ */
+public class BatchImporter implements AutoCloseable {
+
+    private static final Log LOG = LoggerFactory.getLogger(BatchImporter.class);
+
+    private static final int PENDING_DOCUMENTS_PER_WORKER = 4;
+
+    private static final int PROGRESS_INTERVAL = 1000;
+
+    private final BatchInserter inserter;
+
+    private final DynamicConfiguration configuration;
+
+    private final String processorClass;
+
+    private final String pipeline;
+
+    private final String language;
+
+    private final int concurrency;
+
+    private final Map<String, ImportedTag> tags = new HashMap<>();
+
+    private final ThreadLocal<TextProcessor> processors = new ThreadLocal<>();
+
+    private long documents = 0;
+
+    private long failures = 0;
+
+    public BatchImporter(File storeDir, DynamicConfiguration configuration, String processorClass, String pipeline, String language, int concurrency) {
+        String[] existing = storeDir.list();
+        if (existing != null && existing.length > 0) {
+            throw new RuntimeException("The import needs a new store, " + storeDir + " is not empty");
+        }
+        if (concurrency < 1) {
+            throw new RuntimeException("Concurrency must be at least 1");
+        }
+        this.configuration = configuration;
+        this.processorClass = processorClass;
+        this.pipeline = pipeline;
+        this.language = language;
+        this.concurrency = concurrency;
+        try {
+            this.inserter = BatchInserters.inserter(storeDir);
+        } catch (IOException e) {
+            throw new RuntimeException("Could not open " + storeDir + " for import", e);
+        }
+    }
+
+    /**
+     * Imports every regular file under the given directory as one document, the file name without
+     * extension being the document id.
+     *
+     * @return the number of documents imported
+     */
+    public long importDirectory(Path directory) {
+        try (Stream<Path> files = Files.walk(directory)) {
+            List<Path> paths = files.filter(Files::isRegularFile).sorted().collect(Collectors.toList());
+
+            return importFiles(paths.iterator());
+        } catch (IOException e) {
+            throw new RuntimeException("Could not list the files of " + directory, e);
+        }
+    }
+
+    public long importFiles(Iterator<Path> files) {
+        ExecutorService workers = Executors.newFixedThreadPool(concurrency);
+        Deque<Future<ImportedDocument>> pending = new ArrayDeque<>();
+        long imported = documents;
+        try {
+            while (files.hasNext() || !pending.isEmpty()) {
+                while (files.hasNext() && pending.size() < concurrency * PENDING_DOCUMENTS_PER_WORKER) {
+                    Path file = files.next();
+                    pending.add(workers.submit(() -> annotate(file)));
+                }
+                write(pending.poll());
+            }
+        } finally {
+            workers.shutdownNow();
+        }
+
+        return documents - imported;
+    }
+
+    public long getFailures() {
+        return failures;
+    }
+
+    @Override
+    public void close() {
+        try {
+            writeTags();
+        } finally {
+            inserter.shutdown();
+        }
+        LOG.info("Imported " + documents + " documents and " + tags.size() + " tags, " + failures + " documents failed");
+    }
+
+    private ImportedDocument annotate(Path file) throws IOException {
+        String fileName = file.getFileName().toString();
+        String id = fileName.contains(".") ? fileName.substring(0, fileName.lastIndexOf('.')) : fileName;
+        String text = new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+        TextProcessor processor = getProcessor();
+        AnnotatedText annotatedText = processor.annotateText(text, pipeline, language, null);
+        annotatedText.setText(text);
+        annotatedText.setPipeline(pipeline);
+        annotatedText.setTextProcessor(processor.getClass().getName());
+
+        return new ImportedDocument(id, annotatedText);
+    }
+
+    private TextProcessor getProcessor() {
+        TextProcessor processor = processors.get();
+        if (processor == null) {
+            processor = ServiceLoader.loadTextProcessor(processorClass);
+            processor.init();
+            if (!processor.checkPipeline(pipeline)) {
+                PipelineSpecification pipelineSpecification = configuration.loadPipeline(pipeline);
+                if (pipelineSpecification == null) {
+                    throw new RuntimeException("No pipeline " + pipeline + " for " + processorClass);
+                }
+                processor.createPipeline(pipelineSpecification);
+            }
+            processors.set(processor);
+        }
+
+        return processor;
+    }
+
+    private void write(Future<ImportedDocument> future) {
+        ImportedDocument document;
+        try {
+            document = future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while importing", e);
+        } catch (ExecutionException e) {
+            LOG.error("Could not annotate a document", e.getCause());
+            failures++;
+            return;
+        }
+        writeDocument(document.id, document.annotatedText);
+        if (++documents % PROGRESS_INTERVAL == 0) {
+            LOG.info("Imported " + documents + " documents");
+        }
+    }
+
+    private void writeDocument(String id, AnnotatedText annotatedText) {
+        Map<String, Object> properties = new HashMap<>();
+        properties.put(configuration.getPropertyKeyFor(Properties.PROPERTY_ID), id);
+        properties.put(configuration.getPropertyKeyFor(Properties.NUM_TERMS), annotatedText.getTokens().size());
+        properties.put(configuration.getPropertyKeyFor(Properties.HASH), HashFunctions.MD5(annotatedText.getText()));
+        properties.put(configuration.getPropertyKeyFor(Properties.PIPELINE), annotatedText.getPipeline());
+        properties.put(configuration.getPropertyKeyFor(Properties.TEXT_PROCESSOR), annotatedText.getTextProcessor());
+        properties.put(configuration.getPropertyKeyFor(Properties.PIPELINE_FINGERPRINT),
+                ProcessorUtils.getPipelineFingerprint(annotatedText.getTextProcessor(), annotatedText.getPipeline(), configuration));
+        long annotatedTextNode = inserter.createNode(properties, configuration.getLabelFor(Labels.AnnotatedText));
+        Long previousSentenceNode = null;
+        for (Sentence sentence : annotatedText.getSentencesSorted()) {
+            long sentenceNode = writeSentence(id, sentence);
+            inserter.createRelationship(annotatedTextNode, sentenceNode, configuration.getRelationshipFor(Relationships.CONTAINS_SENTENCE), null);
+            if (previousSentenceNode == null) {
+                inserter.createRelationship(annotatedTextNode, sentenceNode, configuration.getRelationshipFor(Relationships.FIRST_SENTENCE), null);
+            } else {
+                inserter.createRelationship(previousSentenceNode, sentenceNode, configuration.getRelationshipFor(Relationships.NEXT_SENTENCE), null);
+            }
+            previousSentenceNode = sentenceNode;
+        }
+    }
+
+    private long writeSentence(String id, Sentence sentence) {
+        Map<String, Object> properties = new HashMap<>();
+        properties.put(configuration.getPropertyKeyFor(Properties.PROPERTY_ID), String.format("%s_%s", id, sentence.getSentenceNumber()));
+        properties.put(configuration.getPropertyKeyFor(Properties.SENTENCE_NUMBER), sentence.getSentenceNumber());
+        properties.put(configuration.getPropertyKeyFor(Properties.HASH), sentence.hash());
+        properties.put(configuration.getPropertyKeyFor(Properties.TEXT), sentence.getSentence());
+        List<Label> labels = new ArrayList<>();
+        labels.add(configuration.getLabelFor(Labels.Sentence));
+        Label sentimentLabel = SentenceUtils.getDefaultLabelForSentimentLevel(sentence.getSentiment());
+        if (sentimentLabel != null) {
+            labels.add(configuration.getLabelFor(sentimentLabel));
+        }
+        long sentenceNode = inserter.createNode(properties, labels.toArray(new Label[0]));
+
+        for (Tag tag : sentence.getTags()) {
+            Map<String, Object> relationshipProperties = Collections.singletonMap(configuration.getPropertyKeyFor(Properties.TF), tag.getMultiplicity());
+            inserter.createRelationship(sentenceNode, getTagNode(tag), configuration.getRelationshipFor(Relationships.HAS_TAG), relationshipProperties);
+        }
+        for (List<TagOccurrence> occurrences : sentence.getTagOccurrences().values()) {
+            for (TagOccurrence occurrence : occurrences) {
+                Map<String, Object> occurrenceProperties = new HashMap<>();
+                occurrenceProperties.put(configuration.getPropertyKeyFor(Properties.OCCURRENCE_BEGIN), occurrence.getSpan().first());
+                occurrenceProperties.put(configuration.getPropertyKeyFor(Properties.OCCURRENCE_END), occurrence.getSpan().second());
+                occurrenceProperties.put(configuration.getPropertyKeyFor(Properties.PART_OF_SPEECH), occurrence.getElement().getPosAsArray());
+                occurrenceProperties.put(configuration.getPropertyKeyFor(Properties.NAMED_ENTITY), occurrence.getElement().getNeAsArray());
+                occurrenceProperties.put(configuration.getPropertyKeyFor(Properties.TAG_ORIGINAL_VALUE), occurrence.getValue());
+                long occurrenceNode = inserter.createNode(occurrenceProperties, configuration.getLabelFor(Labels.TagOccurrence));
+                inserter.createRelationship(sentenceNode, occurrenceNode, configuration.getRelationshipFor(Relationships.SENTENCE_TAG_OCCURRENCE), null);
+                inserter.createRelationship(occurrenceNode, getTagNode(occurrence.getElement()), configuration.getRelationshipFor(Relationships.TAG_OCCURRENCE_TAG), null);
+            }
+        }
+
+        return sentenceNode;
+    }
+
+    private long getTagNode(Tag tag) {
+        ImportedTag importedTag = tags.get(tag.getId());
+        if (importedTag == null) {
+            Map<String, Object> properties = new HashMap<>();
+            properties.put(configuration.getPropertyKeyFor(Properties.PROPERTY_ID), tag.getId());
+            properties.put(configuration.getPropertyKeyFor(Properties.LANGUAGE), tag.getLanguage());
+            properties.put(configuration.getPropertyKeyFor(Properties.CONTENT_VALUE), tag.getLemma());
+            importedTag = new ImportedTag(inserter.createNode(properties, configuration.getLabelFor(Labels.Tag)));
+            tags.put(tag.getId(), importedTag);
+        }
+        importedTag.pos.addAll(tag.getPosAsList());
+        importedTag.ne.addAll(tag.getNeAsList());
+        importedTag.extraProperties.putAll(tag.getExtraProperties());
+
+        return importedTag.node;
+    }
+
+    private void writeTags() {
+        String posKey = configuration.getPropertyKeyFor(Properties.PART_OF_SPEECH);
+        String neKey = configuration.getPropertyKeyFor(Properties.NAMED_ENTITY);
+        String neLabelPrefix = configuration.getPropertyKeyFor(Properties.NAMED_ENTITY_PREFIX);
+        Label tagLabel = configuration.getLabelFor(Labels.Tag);
+        tags.values().forEach(importedTag -> {
+            inserter.setNodeProperty(importedTag.node, posKey, TypeConverter.convertStringListToArray(new ArrayList<>(importedTag.pos)));
+            inserter.setNodeProperty(importedTag.node, neKey, TypeConverter.convertStringListToArray(new ArrayList<>(importedTag.ne)));
+            importedTag.extraProperties.forEach((key, value) -> inserter.setNodeProperty(importedTag.node, key, value));
+            List<Label> labels = new ArrayList<>();
+            labels.add(tagLabel);
+            importedTag.ne.forEach(ne -> labels.add(Label.label(neLabelPrefix + TagUtils.getNamedEntityValue(ne))));
+            inserter.setNodeLabels(importedTag.node, labels.toArray(new Label[0]));
+        });
+    }
+
+    /**
+     * Usage: BatchImporter &lt;store directory&gt; &lt;input directory&gt; &lt;text processor class&gt;
+     * [pipeline] [language] [concurrency] [configuration json file]
+     *
+     * The configuration file holds the label, property and pipeline keys as listed by ga.nlp.config.show.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 3) {
+            System.err.println("Usage: BatchImporter <store directory> <input directory> <text processor class> [pipeline] [language] [concurrency] [configuration json file]");
+            System.exit(1);
+        }
+        String pipeline = args.length > 3 ? args[3] : TextProcessor.DEFAULT_PIPELINE;
+        String language = args.length > 4 ? args[4] : "en";
+        int concurrency = args.length > 5 ? Integer.valueOf(args[5]) : Runtime.getRuntime().availableProcessors();
+        Map<String, Object> configuration = args.length > 6
+                ? new ObjectMapper().readValue(new File(args[6]), Map.class)
+                : new HashMap<>();
+        try (BatchImporter importer = new BatchImporter(new File(args[0]), new DynamicConfiguration(configuration), args[2], pipeline, language, concurrency)) {
+            importer.importDirectory(Paths.get(args[1]));
+        }
+    }
+
+    private static class ImportedDocument {
+
+        private final String id;
+
+        private final AnnotatedText annotatedText;
+
+        private ImportedDocument(String id, AnnotatedText annotatedText) {
+            this.id = id;
+            this.annotatedText = annotatedText;
+        }
+    }
+
+    private static class ImportedTag {
+
+        private final long node;
+
+        private final Set<String> pos = new LinkedHashSet<>();
+
+        private final Set<String> ne = new LinkedHashSet<>();
+
+        private final Map<String, Object> extraProperties = new HashMap<>();
+
+        private ImportedTag(long node) {
+            this.node = node;
+        }
+    }
+}
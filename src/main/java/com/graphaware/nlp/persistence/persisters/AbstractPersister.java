@@ -18,14 +18,17 @@ package com.graphaware.nlp.persistence.persisters;
 import org.codehaus.jackson.map.DeserializationConfig;
 import org.codehaus.jackson.map.ObjectMapper;
 import com.graphaware.nlp.configuration.DynamicConfiguration;
+import com.graphaware.nlp.persistence.NodeIdCache;
 import com.graphaware.nlp.persistence.PersistenceRegistry;
 import org.codehaus.jackson.map.SerializationConfig;
 import org.neo4j.graphdb.GraphDatabaseService;
 import org.neo4j.graphdb.Label;
 import org.neo4j.graphdb.Node;
 import org.neo4j.graphdb.ResourceIterator;
+import org.neo4j.graphdb.Result;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 public abstract class AbstractPersister {
@@ -75,4 +78,52 @@ public abstract class AbstractPersister {
 
         return all.isEmpty() ? null : all.get(0);
     }
+
+    /**
+     * Same as {@link #getIfExist(Label, String, Object)} through the shared node id cache, for nodes
+     * with a natural key repeated across documents like tags, phrases and keywords.
+     */
+    protected Node getCachedIfExist(Label label, String key, Object value) {
+        Node node = getNodeIdCache().get(getDatabase(), label, key, value);
+        if (node != null) {
+            return node;
+        }
+        node = getIfExist(label, key, value);
+        if (node != null) {
+            getNodeIdCache().put(label, key, value, node);
+        }
+
+        return node;
+    }
+
+    /**
+     * Creates a node with a natural key and caches it, the key property is expected to be set in the
+     * same transaction.
+     */
+    protected Node createCachedNode(Label label, String key, Object value) {
+        Node node = getDatabase().createNode(label);
+        getNodeIdCache().put(label, key, value, node);
+
+        return node;
+    }
+
+    /**
+     * Gets or creates a node with a natural key through a MERGE and caches it. With a uniqueness
+     * constraint on the key, the MERGE locks the key until the transaction commits, so a node created
+     * concurrently by another transaction is returned once committed instead of failing the constraint.
+     */
+    protected Node mergeCachedNode(Label label, String key, Object value) {
+        String query = String.format("MERGE (n:`%s` {`%s`: {value}}) RETURN n", label.name(), key);
+        Node node;
+        try (Result result = getDatabase().execute(query, Collections.singletonMap("value", value))) {
+            node = (Node) result.next().get("n");
+        }
+        getNodeIdCache().put(label, key, value, node);
+
+        return node;
+    }
+
+    protected NodeIdCache getNodeIdCache() {
+        return registry.getNodeIdCache();
+    }
 }
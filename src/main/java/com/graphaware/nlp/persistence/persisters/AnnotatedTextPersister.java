@@ -15,25 +15,50 @@
  */
 package com.graphaware.nlp.persistence.persisters;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.graphaware.common.log.LoggerFactory;
 import com.graphaware.nlp.configuration.DynamicConfiguration;
+import com.graphaware.nlp.configuration.SettingsConstants;
 import com.graphaware.nlp.domain.AnnotatedText;
 import com.graphaware.nlp.domain.Sentence;
+import com.graphaware.nlp.domain.Tag;
+import com.graphaware.nlp.dsl.request.PipelineSpecification;
+import com.graphaware.nlp.persistence.PersistenceLayer;
+import com.graphaware.nlp.persistence.LazyAnnotatedText;
 import com.graphaware.nlp.persistence.PersistenceRegistry;
 import com.graphaware.nlp.persistence.constants.Labels;
 import com.graphaware.nlp.persistence.constants.Properties;
 import com.graphaware.nlp.persistence.constants.Relationships;
+import com.graphaware.nlp.util.HashFunctions;
+import com.graphaware.nlp.util.ProcessorUtils;
+import com.graphaware.nlp.util.TextUtils;
 import org.neo4j.graphdb.Direction;
 import org.neo4j.graphdb.GraphDatabaseService;
 import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Relationship;
 import org.neo4j.logging.Log;
 
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.atomic.AtomicReference;
 
 public class AnnotatedTextPersister extends AbstractPersister implements Persister<AnnotatedText> {
 
     private static final Log LOG = LoggerFactory.getLogger(AnnotatedTextPersister.class);
 
+    private static final int DECOMPRESSED_TEXT_CACHE_SIZE = 64;
+
+    private final Cache<String, String> decompressedTexts = CacheBuilder.newBuilder()
+            .maximumSize(DECOMPRESSED_TEXT_CACHE_SIZE)
+            .build();
+
     public AnnotatedTextPersister(GraphDatabaseService database, DynamicConfiguration dynamicConfiguration, PersistenceRegistry registry) {
         super(database, dynamicConfiguration, registry);
     }
@@ -46,19 +71,59 @@ public class AnnotatedTextPersister extends AbstractPersister implements Persist
     @Override
     public Node persist(AnnotatedText annotatedText, String id, String txId) {
         LOG.info("Start storing annotatedText " + id);
-        Node tmpAnnotatedNode = getIfExist(configuration().getLabelFor(Labels.AnnotatedText), Properties.PROPERTY_ID, id);
-        final Node annotatedTextNode;
-        if (tmpAnnotatedNode != null) {
-            annotatedTextNode = tmpAnnotatedNode;
+        Node annotatedTextNode = getIfExist(configuration().getLabelFor(Labels.AnnotatedText), Properties.PROPERTY_ID, id);
+        Map<String, Deque<Node>> reusableSentences;
+        if (annotatedTextNode != null) {
+            reusableSentences = removeChangedSentences(annotatedTextNode, annotatedText);
+            annotatedTextNode.setProperty(configuration().getPropertyKeyFor(Properties.NUM_TERMS), annotatedText.getTokens().size());
         } else {
             annotatedTextNode = getOrCreate(annotatedText, id, txId);
-
+            reusableSentences = new HashMap<>();
         }
-        iterateSentencesAndStore(annotatedTextNode, annotatedText, id, txId);
-        tmpAnnotatedNode = annotatedTextNode;
+        iterateSentencesAndStore(annotatedTextNode, annotatedText, id, txId, reusableSentences, null, annotatedText.getText());
+        update(annotatedTextNode, annotatedText, id);
 
         LOG.info("end storing annotatedText " + id);
-        return tmpAnnotatedNode;
+        return annotatedTextNode;
+    }
+
+    /**
+     * Stores the sentences of one chunk of a text annotated in chunks. The first chunk creates the
+     * AnnotatedText node, or replaces all the sentences of an existing one, the following chunks
+     * append their sentences to the chain. Sentences must already carry their number and offsets in
+     * the whole text, hash and pipeline are set with {@link #update(Node, AnnotatedText, String)}
+     * once all the chunks are stored.
+     */
+    public Node persistChunk(AnnotatedText chunk, String id, String txId, boolean firstChunk) {
+        return persistChunk(chunk, id, txId, firstChunk, null);
+    }
+
+    /**
+     * Same as {@link #persistChunk(AnnotatedText, String, String, boolean)}, the text of the whole
+     * document being used to store the sentences as offsets with the sentenceTextOffsets setting.
+     */
+    public Node persistChunk(AnnotatedText chunk, String id, String txId, boolean firstChunk, String documentText) {
+        Node annotatedTextNode = getIfExist(configuration().getLabelFor(Labels.AnnotatedText), Properties.PROPERTY_ID, id);
+        String numTermsKey = configuration().getPropertyKeyFor(Properties.NUM_TERMS);
+        Node previousSentence = null;
+        if (annotatedTextNode == null) {
+            annotatedTextNode = getOrCreate(chunk, id, txId);
+        } else if (firstChunk) {
+            collectReusableSentences(annotatedTextNode, new HashMap<>());
+            annotatedTextNode.removeProperty(configuration().getPropertyKeyFor(Properties.HASH));
+            annotatedTextNode.setProperty(numTermsKey, chunk.getTokens().size());
+        } else {
+            int numTerms = ((Number) annotatedTextNode.getProperty(numTermsKey, 0)).intValue();
+            annotatedTextNode.setProperty(numTermsKey, numTerms + chunk.getTokens().size());
+            List<Sentence> sentences = chunk.getSentencesSorted();
+            if (!sentences.isEmpty()) {
+                String previousId = String.format("%s_%s", id, sentences.get(0).getSentenceNumber() - 1);
+                previousSentence = getIfExist(configuration().getLabelFor(Labels.Sentence), configuration().getPropertyKeyFor(Properties.PROPERTY_ID), previousId);
+            }
+        }
+        iterateSentencesAndStore(annotatedTextNode, chunk, id, txId, new HashMap<>(), previousSentence, documentText);
+
+        return annotatedTextNode;
     }
 
     @Override
@@ -76,6 +141,18 @@ public class AnnotatedTextPersister extends AbstractPersister implements Persist
         return annotatedText;
     }
 
+    /**
+     * Read view of a stored text that loads sentences, tags and occurrences on access instead of
+     * mapping the whole document up front. Dependencies and phrases are not loaded.
+     */
+    public LazyAnnotatedText lazyFromNode(Node node) {
+        if (!node.hasLabel(configuration().getLabelFor(Labels.AnnotatedText))) {
+            throw new RuntimeException("Expected an " + configuration().getLabelFor(Labels.AnnotatedText) + " node.");
+        }
+
+        return new LazyAnnotatedText(node, configuration(), this, (SentencePersister) getPersister(Sentence.class));
+    }
+
     @Override
     public boolean exists(String id) {
         return null != getIfExist(configuration().getLabelFor(Labels.AnnotatedText), Properties.PROPERTY_ID, id);
@@ -92,28 +169,224 @@ public class AnnotatedTextPersister extends AbstractPersister implements Persist
 
     @Override
     public void update(Node node, AnnotatedText object, String id) {
+        if (object.getText() != null) {
+            node.setProperty(configuration().getPropertyKeyFor(Properties.HASH), HashFunctions.MD5(object.getText()));
+            if (isEnabled(SettingsConstants.SENTENCE_TEXT_OFFSETS)) {
+                storeText(node, object.getText());
+            }
+        }
+        if (object.getPipeline() != null) {
+            node.setProperty(configuration().getPropertyKeyFor(Properties.PIPELINE), object.getPipeline());
+        }
+        if (object.getTextProcessor() != null) {
+            node.setProperty(configuration().getPropertyKeyFor(Properties.TEXT_PROCESSOR), object.getTextProcessor());
+            node.setProperty(configuration().getPropertyKeyFor(Properties.PIPELINE_FINGERPRINT),
+                    ProcessorUtils.getPipelineFingerprint(object.getTextProcessor(), object.getPipeline(), configuration()));
+        } else {
+            node.removeProperty(configuration().getPropertyKeyFor(Properties.TEXT_PROCESSOR));
+            node.removeProperty(configuration().getPropertyKeyFor(Properties.PIPELINE_FINGERPRINT));
+        }
+    }
+
+    /**
+     * Returns the AnnotatedText node with the given id if it has been annotated from the same text
+     * with the same text processor and the same definition of the pipeline, null otherwise.
+     */
+    public Node getIfUnchanged(String id, String text, String textProcessor, String pipeline) {
+        Node node = getIfExist(configuration().getLabelFor(Labels.AnnotatedText), Properties.PROPERTY_ID, id);
+        if (node == null || text == null) {
+            return null;
+        }
+        Object hash = node.getProperty(configuration().getPropertyKeyFor(Properties.HASH), null);
+        if (HashFunctions.MD5(text).equals(hash) && isAnnotatedWith(node, textProcessor, pipeline)) {
+            return node;
+        }
+
+        return null;
+    }
+
+    private boolean isAnnotatedWith(Node annotatedTextNode, String textProcessor, String pipeline) {
+        if (textProcessor == null || pipeline == null) {
+            return false;
+        }
+        Object storedPipeline = annotatedTextNode.getProperty(configuration().getPropertyKeyFor(Properties.PIPELINE), null);
+        Object storedProcessor = annotatedTextNode.getProperty(configuration().getPropertyKeyFor(Properties.TEXT_PROCESSOR), null);
+        Object storedFingerprint = annotatedTextNode.getProperty(configuration().getPropertyKeyFor(Properties.PIPELINE_FINGERPRINT), null);
+
+        return pipeline.equals(storedPipeline)
+                && textProcessor.equals(storedProcessor)
+                && ProcessorUtils.getPipelineFingerprint(textProcessor, pipeline, configuration()).equals(storedFingerprint);
+    }
+
+    /**
+     * Compares the stored sentences of an already annotated text with the new annotation. Sentences
+     * whose hash is still present are kept for reuse, the other ones are deleted. Sentences are only
+     * reused when the text was annotated with the same text processor and pipeline definition.
+     */
+    private Map<String, Deque<Node>> removeChangedSentences(Node annotatedTextNode, AnnotatedText annotatedText) {
+        boolean samePipeline = isAnnotatedWith(annotatedTextNode, annotatedText.getTextProcessor(), annotatedText.getPipeline());
+        Map<String, Integer> newHashes = new HashMap<>();
+        if (samePipeline) {
+            annotatedText.getSentences().forEach(sentence -> newHashes.merge(sentence.hash(), 1, Integer::sum));
+        }
+
+        return collectReusableSentences(annotatedTextNode, newHashes);
+    }
 
+    /**
+     * Unlinks the sentence chain of the given AnnotatedText node and deletes the sentences whose
+     * hash is not in newHashes, with newHashes giving how many sentences of each hash can be reused.
+     */
+    private Map<String, Deque<Node>> collectReusableSentences(Node annotatedTextNode, Map<String, Integer> newHashes) {
+        Map<String, Deque<Node>> reusable = new HashMap<>();
+        List<Node> removed = new ArrayList<>();
+        List<Relationship> chain = new ArrayList<>();
+        annotatedTextNode.getRelationships(configuration().getRelationshipFor(Relationships.FIRST_SENTENCE), Direction.OUTGOING).forEach(chain::add);
+        annotatedTextNode.getRelationships(configuration().getRelationshipFor(Relationships.CONTAINS_SENTENCE), Direction.OUTGOING).forEach(relationship -> {
+            Node sentenceNode = relationship.getEndNode();
+            sentenceNode.getRelationships(configuration().getRelationshipFor(Relationships.NEXT_SENTENCE), Direction.OUTGOING).forEach(chain::add);
+            String hash = (String) sentenceNode.getProperty(configuration().getPropertyKeyFor(Properties.HASH), null);
+            Deque<Node> nodes = reusable.computeIfAbsent(hash, k -> new ArrayDeque<>());
+            if (hash != null && newHashes.getOrDefault(hash, 0) > nodes.size()) {
+                nodes.add(sentenceNode);
+            } else {
+                removed.add(sentenceNode);
+            }
+        });
+        chain.forEach(Relationship::delete);
+        SentencePersister sentencePersister = (SentencePersister) getPersister(Sentence.class);
+        removed.forEach(sentencePersister::delete);
+        LOG.info("Reusing " + reusable.values().stream().mapToInt(Deque::size).sum() + " sentences, removed " + removed.size() + " sentences");
+
+        return reusable;
     }
 
-    private void iterateSentencesAndStore(Node annotatedTextNode, AnnotatedText annotatedText, String id, String txId) {
-        final AtomicReference<Node> previousSentenceReference = new AtomicReference<>();
+    private void iterateSentencesAndStore(Node annotatedTextNode, AnnotatedText annotatedText, String id, String txId, Map<String, Deque<Node>> reusableSentences, Node previousSentenceNode, String documentText) {
+        SentencePersister sentencePersister = (SentencePersister) getPersister(Sentence.class);
         annotatedText.getSentences().sort((Sentence o1, Sentence o2) -> o1.compareTo(o2));
-        annotatedText.getSentences().forEach((sentence) -> {
-            Node sentenceNode = getPersister(Sentence.class).persist(sentence, id, txId);
+        List<Sentence> sentences = annotatedText.getSentences();
+        if (documentText != null && isEnabled(SettingsConstants.SENTENCE_TEXT_OFFSETS)) {
+            locateSentences(sentences, documentText);
+        }
+        Node[] sentenceNodes = new Node[sentences.size()];
+        // unchanged sentences are moved first, so that their previous ids are free for the new ones
+        for (int i = 0; i < sentences.size(); ++i) {
+            Deque<Node> candidates = reusableSentences.get(sentences.get(i).hash());
+            if (candidates != null && !candidates.isEmpty()) {
+                sentenceNodes[i] = candidates.poll();
+                sentencePersister.relocate(sentenceNodes[i], sentences.get(i), id);
+            }
+        }
+        Set<PersistenceLayer> layers = getPersistenceProfile(annotatedText.getPipeline());
+        Map<String, Node> tagNodes = layers.contains(PersistenceLayer.TAGS) || layers.contains(PersistenceLayer.OCCURRENCES)
+                ? resolveTags(sentences, sentenceNodes, txId)
+                : new HashMap<>();
+        final AtomicReference<Node> previousSentenceReference = new AtomicReference<>(previousSentenceNode);
+        for (int i = 0; i < sentences.size(); ++i) {
+            boolean isNew = sentenceNodes[i] == null;
+            Node sentenceNode = isNew ? sentencePersister.persist(sentences.get(i), id, txId, tagNodes, layers) : sentenceNodes[i];
             Node previousSentence = previousSentenceReference.get();
             boolean isFirstSentence = previousSentence == null;
-            relateSentenceToAnnotatedText(sentenceNode, annotatedTextNode, isFirstSentence);
+            relateSentenceToAnnotatedText(sentenceNode, annotatedTextNode, isNew, isFirstSentence);
             if (!isFirstSentence) {
                 relatePreviousSentenceToNext(previousSentence, sentenceNode);
             }
             previousSentenceReference.set(sentenceNode);
-        });
+        }
+    }
+
+    /**
+     * Sets the offset of each sentence in the document text, searching from the first token of the
+     * sentence. Sentences whose text is not found as is keep their text on the sentence node.
+     */
+    private void locateSentences(List<Sentence> sentences, String documentText) {
+        int cursor = 0;
+        for (Sentence sentence : sentences) {
+            String text = sentence.getSentence();
+            int offset = -1;
+            if (!sentence.getTagOccurrences().isEmpty()) {
+                int firstToken = Collections.min(sentence.getTagOccurrences().keySet());
+                if (firstToken >= 0 && documentText.startsWith(text, firstToken)) {
+                    offset = firstToken;
+                }
+            }
+            if (offset < 0) {
+                offset = documentText.indexOf(text, cursor);
+            }
+            sentence.setTextOffset(offset);
+            if (offset >= 0) {
+                cursor = offset + text.length();
+            }
+        }
+    }
+
+    private void storeText(Node node, String text) {
+        String textKey = configuration().getPropertyKeyFor(Properties.TEXT);
+        String compressedKey = configuration().getPropertyKeyFor(Properties.COMPRESSED_TEXT);
+        if (isEnabled(SettingsConstants.COMPRESS_TEXT)) {
+            node.setProperty(compressedKey, TextUtils.compress(text));
+            node.removeProperty(textKey);
+        } else {
+            node.setProperty(textKey, text);
+            node.removeProperty(compressedKey);
+        }
     }
 
-    private void relateSentenceToAnnotatedText(Node sentence, Node annotatedText, boolean isFirstSentence) {
-        annotatedText.createRelationshipTo(
-                sentence,
-                configuration().getRelationshipFor(Relationships.CONTAINS_SENTENCE));
+    /**
+     * @return the text of the document stored with the sentenceTextOffsets setting, null if not stored
+     */
+    public String getText(Node annotatedTextNode) {
+        Object text = annotatedTextNode.getProperty(configuration().getPropertyKeyFor(Properties.TEXT), null);
+        if (text != null) {
+            return text.toString();
+        }
+        byte[] compressed = (byte[]) annotatedTextNode.getProperty(configuration().getPropertyKeyFor(Properties.COMPRESSED_TEXT), null);
+        if (compressed == null) {
+            return null;
+        }
+        String key = annotatedTextNode.getId() + "_" + annotatedTextNode.getProperty(configuration().getPropertyKeyFor(Properties.HASH), "");
+        String cached = decompressedTexts.getIfPresent(key);
+        if (cached == null) {
+            cached = TextUtils.decompress(compressed);
+            decompressedTexts.put(key, cached);
+        }
+
+        return cached;
+    }
+
+    private boolean isEnabled(String setting) {
+        return configuration().hasSettingValue(setting)
+                && Boolean.valueOf(configuration().getSettingValueFor(setting).toString());
+    }
+
+    private Set<PersistenceLayer> getPersistenceProfile(String pipeline) {
+        if (pipeline == null) {
+            return PersistenceLayer.all();
+        }
+        PipelineSpecification pipelineSpecification = configuration().loadPipeline(pipeline);
+
+        return pipelineSpecification != null ? pipelineSpecification.getPersistenceProfile() : PersistenceLayer.all();
+    }
+
+    private Map<String, Node> resolveTags(List<Sentence> sentences, Node[] sentenceNodes, String txId) {
+        List<Tag> tags = new ArrayList<>();
+        for (int i = 0; i < sentences.size(); ++i) {
+            if (sentenceNodes[i] != null) {
+                continue;
+            }
+            tags.addAll(sentences.get(i).getTags());
+            sentences.get(i).getTagOccurrences().values().forEach(occurrences -> occurrences.forEach(occurrence -> tags.add(occurrence.getElement())));
+        }
+
+        return ((TagPersister) getPersister(Tag.class)).getOrCreateAll(tags, txId);
+    }
+
+    private void relateSentenceToAnnotatedText(Node sentence, Node annotatedText, boolean isNew, boolean isFirstSentence) {
+        if (isNew) {
+            annotatedText.createRelationshipTo(
+                    sentence,
+                    configuration().getRelationshipFor(Relationships.CONTAINS_SENTENCE));
+        }
         if (isFirstSentence) {
             annotatedText.createRelationshipTo(sentence, configuration().getRelationshipFor(Relationships.FIRST_SENTENCE));
         }
@@ -54,11 +54,11 @@ public class KeywordPersister extends AbstractPersister implements Persister<Key
     @Override
     public Node getOrCreate(Keyword keyword, String id, String txId) {
         Node newNode;
-        Node storedKeyword = getIfExist(keywordLabel, "id", keyword.getKeyword());
+        Node storedKeyword = getCachedIfExist(keywordLabel, "id", keyword.getKeyword());
         if (storedKeyword != null) {
             newNode = storedKeyword;
         } else {
-            newNode = database.createNode(keywordLabel);
+            newNode = createCachedNode(keywordLabel, "id", keyword.getKeyword());
             update(newNode, keyword, id);
         }
         return newNode;
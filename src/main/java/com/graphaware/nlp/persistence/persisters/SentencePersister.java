@@ -16,7 +16,9 @@
 package com.graphaware.nlp.persistence.persisters;
 
 import com.graphaware.nlp.configuration.DynamicConfiguration;
+import com.graphaware.nlp.configuration.SettingsConstants;
 import com.graphaware.nlp.domain.*;
+import com.graphaware.nlp.persistence.PersistenceLayer;
 import com.graphaware.nlp.persistence.PersistenceRegistry;
 import com.graphaware.nlp.persistence.constants.Labels;
 import com.graphaware.nlp.persistence.constants.Properties;
@@ -24,17 +26,46 @@ import com.graphaware.nlp.persistence.constants.Relationships;
 import com.graphaware.nlp.util.SentenceUtils;
 import org.neo4j.graphdb.*;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
 
 public class SentencePersister extends AbstractPersister implements Persister<Sentence> {
 
+    private static final Map<String, RelationshipType> DEPENDENCY_TYPES = new ConcurrentHashMap<>();
+
+    private static final String PACKED_SEPARATOR = "|";
+
+    private static final Pattern PACKED_SEPARATOR_PATTERN = Pattern.compile(Pattern.quote(PACKED_SEPARATOR));
+
     public SentencePersister(GraphDatabaseService database, DynamicConfiguration dynamicConfiguration, PersistenceRegistry registry) {
         super(database, dynamicConfiguration, registry);
     }
 
     @Override
     public Node persist(Sentence sentence, String id, String txId) {
+        return persist(sentence, id, txId, new HashMap<>());
+    }
+
+    /**
+     * Persists the sentence using the tag nodes already resolved for the document, tags missing from
+     * the map are resolved and added to it.
+     */
+    public Node persist(Sentence sentence, String id, String txId, Map<String, Node> tagNodes) {
+        return persist(sentence, id, txId, tagNodes, PersistenceLayer.all());
+    }
+
+    /**
+     * Persists the sentence writing only the given annotation layers.
+     */
+    public Node persist(Sentence sentence, String id, String txId, Map<String, Node> tagNodes, Set<PersistenceLayer> layers) {
         String sentenceId = String.format("%s_%s", id, sentence.getSentenceNumber());
         Node sentenceNode = getIfExist(configuration().getLabelFor(Labels.Sentence), configuration().getPropertyKeyFor(Properties.PROPERTY_ID), sentenceId);
         Node newSentenceNode;
@@ -44,11 +75,26 @@ public class SentencePersister extends AbstractPersister implements Persister<Se
             newSentenceNode = sentenceNode;
         }
         update(newSentenceNode, sentence, id);
-        storeSentenceTags(sentence, newSentenceNode, id, txId);
-        storeSentenceTagOccurrences(sentence, newSentenceNode, txId);
-        storeUniversalDependenciesForSentence(sentence, newSentenceNode);
-        storePhrases(sentence, newSentenceNode, txId);
-        assignSentimentLabel(sentence, newSentenceNode);
+        if (layers.contains(PersistenceLayer.TAGS)) {
+            storeSentenceTags(sentence, newSentenceNode, id, txId, tagNodes);
+        }
+        boolean dependencies = layers.contains(PersistenceLayer.DEPENDENCIES);
+        if (layers.contains(PersistenceLayer.OCCURRENCES)) {
+            if (usePackedOccurrences()) {
+                storePackedTagOccurrences(sentence, newSentenceNode, txId, tagNodes, dependencies);
+            } else {
+                Map<String, Node> tokenNodes = storeSentenceTagOccurrences(sentence, newSentenceNode, txId, tagNodes);
+                if (dependencies) {
+                    storeUniversalDependenciesForSentence(sentence, tokenNodes);
+                }
+            }
+        }
+        if (layers.contains(PersistenceLayer.PHRASES)) {
+            storePhrases(sentence, newSentenceNode, txId);
+        }
+        if (layers.contains(PersistenceLayer.SENTIMENT)) {
+            assignSentimentLabel(sentence, newSentenceNode);
+        }
         sentenceNode = newSentenceNode;
 
         return sentenceNode;
@@ -57,7 +103,7 @@ public class SentencePersister extends AbstractPersister implements Persister<Se
     @Override
     public Sentence fromNode(Node node) {
         Map<String, Object> properties = node.getAllProperties();
-        String sentence = properties.get(configuration().getPropertyKeyFor(Properties.TEXT)).toString();
+        String sentence = getText(node);
         int sentenceNumber = (int) properties.get(configuration().getPropertyKeyFor(Properties.SENTENCE_NUMBER));
 
         final Sentence sentenceO = new Sentence(sentence, sentenceNumber);
@@ -90,16 +136,159 @@ public class SentencePersister extends AbstractPersister implements Persister<Se
         node.setProperty(configuration().getPropertyKeyFor(Properties.PROPERTY_ID), String.format("%s_%s", id, sentence.getSentenceNumber()));
         node.setProperty(configuration().getPropertyKeyFor(Properties.SENTENCE_NUMBER), sentence.getSentenceNumber());
         node.setProperty(configuration().getPropertyKeyFor(Properties.HASH), sentence.hash());
-        node.setProperty(configuration().getPropertyKeyFor(Properties.TEXT), sentence.getSentence());
+        storeText(node, sentence);
+    }
+
+    /**
+     * Stores the offsets of the sentence text in the document when they are known, with the
+     * sentenceTextOffsets setting, the text itself otherwise.
+     */
+    private void storeText(Node node, Sentence sentence) {
+        String textKey = configuration().getPropertyKeyFor(Properties.TEXT);
+        String beginKey = configuration().getPropertyKeyFor(Properties.SENTENCE_TEXT_BEGIN);
+        String endKey = configuration().getPropertyKeyFor(Properties.SENTENCE_TEXT_END);
+        if (sentence.getTextOffset() >= 0) {
+            node.setProperty(beginKey, sentence.getTextOffset());
+            node.setProperty(endKey, sentence.getTextOffset() + sentence.getSentence().length());
+            node.removeProperty(textKey);
+        } else {
+            node.setProperty(textKey, sentence.getSentence());
+            node.removeProperty(beginKey);
+            node.removeProperty(endKey);
+        }
+    }
+
+    /**
+     * @return the text of the sentence, sliced from the document text when stored as offsets
+     */
+    public String getText(Node sentenceNode) {
+        Object text = sentenceNode.getProperty(configuration().getPropertyKeyFor(Properties.TEXT), null);
+        if (text != null) {
+            return text.toString();
+        }
+        Object begin = sentenceNode.getProperty(configuration().getPropertyKeyFor(Properties.SENTENCE_TEXT_BEGIN), null);
+        Object end = sentenceNode.getProperty(configuration().getPropertyKeyFor(Properties.SENTENCE_TEXT_END), null);
+        Relationship containing = sentenceNode.getSingleRelationship(configuration().getRelationshipFor(Relationships.CONTAINS_SENTENCE), Direction.INCOMING);
+        if (begin == null || end == null || containing == null) {
+            return null;
+        }
+        String documentText = ((AnnotatedTextPersister) getPersister(AnnotatedText.class)).getText(containing.getStartNode());
+        if (documentText == null) {
+            return null;
+        }
+
+        return documentText.substring(((Number) begin).intValue(), ((Number) end).intValue());
+    }
+
+    /**
+     * Moves an unchanged sentence node to the position of the given sentence in the new version of
+     * the document. Its occurrences are kept and shifted by the offset the sentence moved by.
+     */
+    public void relocate(Node sentenceNode, Sentence sentence, String id) {
+        update(sentenceNode, sentence, id);
+        Integer newBegin = getFirstOccurrenceBegin(sentence);
+        Integer oldBegin = getFirstStoredOccurrenceBegin(sentenceNode);
+        if (newBegin == null || oldBegin == null || newBegin.equals(oldBegin)) {
+            return;
+        }
+        int delta = newBegin - oldBegin;
+        shiftPackedOccurrences(sentenceNode, delta);
+        shiftOccurrences(sentenceNode, Relationships.SENTENCE_TAG_OCCURRENCE, Properties.OCCURRENCE_BEGIN, Properties.OCCURRENCE_END, delta);
+        shiftOccurrences(sentenceNode, Relationships.SENTENCE_PHRASE_OCCURRENCE, Properties.START_POSITION, Properties.END_POSITION, delta);
+    }
+
+    /**
+     * Deletes a sentence node together with its tag and phrase occurrences. Tags and phrases are
+     * shared with other sentences and are kept.
+     */
+    public void delete(Node sentenceNode) {
+        deleteOccurrences(sentenceNode, Relationships.SENTENCE_TAG_OCCURRENCE);
+        deleteOccurrences(sentenceNode, Relationships.SENTENCE_PHRASE_OCCURRENCE);
+        detachDelete(sentenceNode);
+    }
+
+    private Integer getFirstOccurrenceBegin(Sentence sentence) {
+        return sentence.getTagOccurrences().keySet().stream()
+                .min(Integer::compareTo)
+                .orElse(null);
+    }
+
+    private Integer getFirstStoredOccurrenceBegin(Node sentenceNode) {
+        if (hasPackedOccurrences(sentenceNode)) {
+            int[] begins = (int[]) sentenceNode.getProperty(configuration().getPropertyKeyFor(Properties.PACKED_BEGIN));
+            return begins.length > 0 ? begins[0] : null;
+        }
+        Integer first = null;
+        for (Relationship relationship : sentenceNode.getRelationships(configuration().getRelationshipFor(Relationships.SENTENCE_TAG_OCCURRENCE), Direction.OUTGOING)) {
+            int begin = ((Number) relationship.getEndNode().getProperty(configuration().getPropertyKeyFor(Properties.OCCURRENCE_BEGIN))).intValue();
+            if (first == null || begin < first) {
+                first = begin;
+            }
+        }
+
+        return first;
+    }
+
+    private void shiftOccurrences(Node sentenceNode, Relationships relationship, String beginKey, String endKey, int delta) {
+        sentenceNode.getRelationships(configuration().getRelationshipFor(relationship), Direction.OUTGOING).forEach(rel -> {
+            Node occurrence = rel.getEndNode();
+            shiftProperty(occurrence, configuration().getPropertyKeyFor(beginKey), delta);
+            shiftProperty(occurrence, configuration().getPropertyKeyFor(endKey), delta);
+        });
+    }
+
+    private void shiftPackedOccurrences(Node sentenceNode, int delta) {
+        if (!hasPackedOccurrences(sentenceNode)) {
+            return;
+        }
+        for (String key : new String[]{Properties.PACKED_BEGIN, Properties.PACKED_END}) {
+            String propertyKey = configuration().getPropertyKeyFor(key);
+            int[] values = (int[]) sentenceNode.getProperty(propertyKey);
+            for (int i = 0; i < values.length; ++i) {
+                values[i] += delta;
+            }
+            sentenceNode.setProperty(propertyKey, values);
+        }
+    }
+
+    private void shiftProperty(Node node, String key, int delta) {
+        Object value = node.getProperty(key, null);
+        if (value instanceof Number) {
+            node.setProperty(key, ((Number) value).intValue() + delta);
+        }
+    }
+
+    private void deleteOccurrences(Node sentenceNode, Relationships relationship) {
+        List<Node> occurrences = new ArrayList<>();
+        sentenceNode.getRelationships(configuration().getRelationshipFor(relationship), Direction.OUTGOING)
+                .forEach(rel -> occurrences.add(rel.getEndNode()));
+        occurrences.forEach(this::detachDelete);
     }
 
-    private void storeSentenceTags(Sentence sentence, Node sentenceNode, String id, String txId) {
+    private void detachDelete(Node node) {
+        List<Relationship> relationships = new ArrayList<>();
+        node.getRelationships().forEach(relationships::add);
+        relationships.forEach(Relationship::delete);
+        node.delete();
+    }
+
+    private void storeSentenceTags(Sentence sentence, Node sentenceNode, String id, String txId, Map<String, Node> tagNodes) {
         sentence.getTags().forEach(tag -> {
-            Node tagNode = getPersister(Tag.class).getOrCreate(tag, id, txId);
+            Node tagNode = getTagNode(tag, id, txId, tagNodes);
             relateSentenceToTag(sentenceNode, tagNode, tag.getMultiplicity());
         });
     }
 
+    private Node getTagNode(Tag tag, String id, String txId, Map<String, Node> tagNodes) {
+        Node tagNode = tagNodes.get(tag.getId());
+        if (tagNode == null) {
+            tagNode = getPersister(Tag.class).getOrCreate(tag, id, txId);
+            tagNodes.put(tag.getId(), tagNode);
+        }
+
+        return tagNode;
+    }
+
     private void relateSentenceToTag(Node sentenceNode, Node tagNode, int multiplicity) {
         Relationship rel = sentenceNode.createRelationshipTo(tagNode, configuration().getRelationshipFor(Relationships.HAS_TAG));
         rel.setProperty(configuration().getPropertyKeyFor(Properties.TF), multiplicity);
@@ -117,15 +306,22 @@ public class SentencePersister extends AbstractPersister implements Persister<Se
         });
     }
 
-    private void storeSentenceTagOccurrences(Sentence sentence, Node sentenceNode, String txId) {
+    /**
+     * @return the created TagOccurrence nodes by token id, for the typed dependencies
+     */
+    private Map<String, Node> storeSentenceTagOccurrences(Sentence sentence, Node sentenceNode, String txId, Map<String, Node> tagNodes) {
+        Map<String, Node> tokenNodes = new HashMap<>();
         sentence.getTagOccurrences().values().forEach(occurrence -> {
             for (TagOccurrence tagAtPosition : occurrence) {
-                Node tagNode = getPersister(Tag.class).getOrCreate(tagAtPosition.getElement(), null, txId);
+                Node tagNode = getTagNode(tagAtPosition.getElement(), null, txId, tagNodes);
                 Node tagOccurrenceNode = createTagOccurrenceNode(tagAtPosition);
                 relateTagOccurrenceToTag(tagOccurrenceNode, tagNode);
                 relateSentenceToTagOccurrence(sentenceNode, tagOccurrenceNode);
+                tagAtPosition.getPartIds().forEach(tokenId -> tokenNodes.put(tokenId, tagOccurrenceNode));
             }
         });
+
+        return tokenNodes;
     }
 
     private void relateSentenceToTagOccurrence(Node sentenceNode, Node tagOccurrenceNode) {
@@ -146,34 +342,194 @@ public class SentencePersister extends AbstractPersister implements Persister<Se
         tagOccurrence.createRelationshipTo(tag, configuration().getRelationshipFor(Relationships.TAG_OCCURRENCE_TAG));
     }
 
-    private void storeUniversalDependenciesForSentence(Sentence sentence, Node sentenceNode) {
-        final Map<String, Long> tokenIdsToNodeIds = new HashMap<>();
-        sentence.getTagOccurrences().values().forEach(occurence -> {
-            occurence.forEach(tagOccurrence -> {
-                Node tagOccurrenceNode = getTagOccurrenceInSentence(sentenceNode, tagOccurrence);
-                if (tagOccurrenceNode == null) {
-                    throw new RuntimeException("Expected to find a TagOccurrence node, got null");
-                }
-                tagOccurrence.getPartIds().forEach(tokenId -> {
-                    tokenIdsToNodeIds.put(tokenId, tagOccurrenceNode.getId());
-                });
-            });
+    private boolean usePackedOccurrences() {
+        return configuration().hasSettingValue(SettingsConstants.PACKED_OCCURRENCES)
+                && Boolean.valueOf(configuration().getSettingValueFor(SettingsConstants.PACKED_OCCURRENCES).toString());
+    }
+
+    /**
+     * Stores the tag occurrences and the typed dependencies of the sentence as arrays on the sentence
+     * node instead of one node per occurrence, dependencies refer to the occurrences by index. The
+     * root occurrence is the source of the ROOT dependency, no Root label is set as there is no
+     * occurrence node to carry it.
+     */
+    private void storePackedTagOccurrences(Sentence sentence, Node sentenceNode, String txId, Map<String, Node> tagNodes, boolean withDependencies) {
+        List<TagOccurrence> occurrences = new ArrayList<>();
+        new TreeMap<>(sentence.getTagOccurrences()).values().forEach(occurrences::addAll);
+        int size = occurrences.size();
+        int[] begins = new int[size];
+        int[] ends = new int[size];
+        long[] tags = new long[size];
+        String[] values = new String[size];
+        String[] pos = new String[size];
+        String[] ne = new String[size];
+        Map<String, Integer> tokenIndexes = new HashMap<>();
+        for (int i = 0; i < size; ++i) {
+            TagOccurrence occurrence = occurrences.get(i);
+            begins[i] = occurrence.getSpan().first();
+            ends[i] = occurrence.getSpan().second();
+            tags[i] = getTagNode(occurrence.getElement(), null, txId, tagNodes).getId();
+            values[i] = occurrence.getValue() != null ? occurrence.getValue() : "";
+            pos[i] = String.join(PACKED_SEPARATOR, occurrence.getElement().getPosAsList());
+            ne[i] = String.join(PACKED_SEPARATOR, occurrence.getElement().getNeAsList());
+            final int index = i;
+            occurrence.getPartIds().forEach(tokenId -> tokenIndexes.put(tokenId, index));
+        }
+
+        List<TypedDependency> dependencies = new ArrayList<>();
+        sentence.getTypedDependencies().forEach(typedDependency -> {
+            if (withDependencies && tokenIndexes.containsKey(typedDependency.getSource()) && tokenIndexes.containsKey(typedDependency.getTarget())) {
+                dependencies.add(typedDependency);
+            }
         });
+        int[] sources = new int[dependencies.size()];
+        int[] targets = new int[dependencies.size()];
+        String[] types = new String[dependencies.size()];
+        String[] specifics = new String[dependencies.size()];
+        for (int i = 0; i < dependencies.size(); ++i) {
+            TypedDependency typedDependency = dependencies.get(i);
+            sources[i] = tokenIndexes.get(typedDependency.getSource());
+            targets[i] = tokenIndexes.get(typedDependency.getTarget());
+            types[i] = typedDependency.getName().toUpperCase();
+            specifics[i] = typedDependency.getSpecific() != null ? typedDependency.getSpecific() : "";
+        }
+
+        sentenceNode.setProperty(configuration().getPropertyKeyFor(Properties.PACKED_BEGIN), begins);
+        sentenceNode.setProperty(configuration().getPropertyKeyFor(Properties.PACKED_END), ends);
+        sentenceNode.setProperty(configuration().getPropertyKeyFor(Properties.PACKED_TAG), tags);
+        sentenceNode.setProperty(configuration().getPropertyKeyFor(Properties.PACKED_VALUE), values);
+        sentenceNode.setProperty(configuration().getPropertyKeyFor(Properties.PACKED_POS), pos);
+        sentenceNode.setProperty(configuration().getPropertyKeyFor(Properties.PACKED_NE), ne);
+        sentenceNode.setProperty(configuration().getPropertyKeyFor(Properties.PACKED_DEPENDENCY_SOURCE), sources);
+        sentenceNode.setProperty(configuration().getPropertyKeyFor(Properties.PACKED_DEPENDENCY_TARGET), targets);
+        sentenceNode.setProperty(configuration().getPropertyKeyFor(Properties.PACKED_DEPENDENCY_TYPE), types);
+        sentenceNode.setProperty(configuration().getPropertyKeyFor(Properties.PACKED_DEPENDENCY_SPECIFIC), specifics);
+    }
+
+    public boolean hasPackedOccurrences(Node sentenceNode) {
+        return sentenceNode.hasProperty(configuration().getPropertyKeyFor(Properties.PACKED_BEGIN));
+    }
+
+    /**
+     * Reads the tag occurrences of a sentence ordered by position, whether they are stored as nodes or
+     * packed on the sentence node: begin, end, value, pos, ne and the tag node.
+     */
+    public List<Map<String, Object>> getOccurrences(Node sentenceNode) {
+        List<Map<String, Object>> occurrences = new ArrayList<>();
+        if (hasPackedOccurrences(sentenceNode)) {
+            int[] begins = (int[]) sentenceNode.getProperty(configuration().getPropertyKeyFor(Properties.PACKED_BEGIN));
+            int[] ends = (int[]) sentenceNode.getProperty(configuration().getPropertyKeyFor(Properties.PACKED_END));
+            long[] tags = (long[]) sentenceNode.getProperty(configuration().getPropertyKeyFor(Properties.PACKED_TAG));
+            String[] values = (String[]) sentenceNode.getProperty(configuration().getPropertyKeyFor(Properties.PACKED_VALUE));
+            String[] pos = (String[]) sentenceNode.getProperty(configuration().getPropertyKeyFor(Properties.PACKED_POS));
+            String[] ne = (String[]) sentenceNode.getProperty(configuration().getPropertyKeyFor(Properties.PACKED_NE));
+            for (int i = 0; i < begins.length; ++i) {
+                occurrences.add(occurrence(begins[i], ends[i], values[i], unpack(pos[i]), unpack(ne[i]), database.getNodeById(tags[i])));
+            }
+
+            return occurrences;
+        }
+        for (Node occurrenceNode : getOccurrenceNodes(sentenceNode)) {
+            occurrences.add(occurrence(
+                    ((Number) occurrenceNode.getProperty(configuration().getPropertyKeyFor(Properties.OCCURRENCE_BEGIN))).intValue(),
+                    ((Number) occurrenceNode.getProperty(configuration().getPropertyKeyFor(Properties.OCCURRENCE_END))).intValue(),
+                    (String) occurrenceNode.getProperty(configuration().getPropertyKeyFor(Properties.TAG_ORIGINAL_VALUE), ""),
+                    (String[]) occurrenceNode.getProperty(configuration().getPropertyKeyFor(Properties.PART_OF_SPEECH), new String[0]),
+                    (String[]) occurrenceNode.getProperty(configuration().getPropertyKeyFor(Properties.NAMED_ENTITY), new String[0]),
+                    occurrenceNode.getSingleRelationship(configuration().getRelationshipFor(Relationships.TAG_OCCURRENCE_TAG), Direction.OUTGOING).getEndNode()));
+        }
+
+        return occurrences;
+    }
+
+    /**
+     * Reads the typed dependencies of a sentence: source and target are indexes in the list returned
+     * by {@link #getOccurrences(Node)}, with the dependency type and specific.
+     */
+    public List<Map<String, Object>> getDependencies(Node sentenceNode) {
+        List<Map<String, Object>> dependencies = new ArrayList<>();
+        if (hasPackedOccurrences(sentenceNode)) {
+            int[] sources = (int[]) sentenceNode.getProperty(configuration().getPropertyKeyFor(Properties.PACKED_DEPENDENCY_SOURCE));
+            int[] targets = (int[]) sentenceNode.getProperty(configuration().getPropertyKeyFor(Properties.PACKED_DEPENDENCY_TARGET));
+            String[] types = (String[]) sentenceNode.getProperty(configuration().getPropertyKeyFor(Properties.PACKED_DEPENDENCY_TYPE));
+            String[] specifics = (String[]) sentenceNode.getProperty(configuration().getPropertyKeyFor(Properties.PACKED_DEPENDENCY_SPECIFIC));
+            for (int i = 0; i < sources.length; ++i) {
+                dependencies.add(dependency(sources[i], targets[i], types[i], specifics[i].isEmpty() ? null : specifics[i]));
+            }
+
+            return dependencies;
+        }
+        List<Node> occurrenceNodes = getOccurrenceNodes(sentenceNode);
+        Map<Long, Integer> indexes = new HashMap<>();
+        for (int i = 0; i < occurrenceNodes.size(); ++i) {
+            indexes.put(occurrenceNodes.get(i).getId(), i);
+        }
+        RelationshipType occurrenceTag = configuration().getRelationshipFor(Relationships.TAG_OCCURRENCE_TAG);
+        for (int i = 0; i < occurrenceNodes.size(); ++i) {
+            for (Relationship relationship : occurrenceNodes.get(i).getRelationships(Direction.OUTGOING)) {
+                Integer target = indexes.get(relationship.getEndNodeId());
+                if (target == null || relationship.isType(occurrenceTag)) {
+                    continue;
+                }
+                dependencies.add(dependency(i, target, relationship.getType().name(),
+                        (String) relationship.getProperty(configuration().getPropertyKeyFor(Properties.DEPENDENCY_SPECIFIC), null)));
+            }
+        }
+
+        return dependencies;
+    }
+
+    private List<Node> getOccurrenceNodes(Node sentenceNode) {
+        List<Node> occurrenceNodes = new ArrayList<>();
+        sentenceNode.getRelationships(configuration().getRelationshipFor(Relationships.SENTENCE_TAG_OCCURRENCE), Direction.OUTGOING)
+                .forEach(relationship -> occurrenceNodes.add(relationship.getEndNode()));
+        String beginKey = configuration().getPropertyKeyFor(Properties.OCCURRENCE_BEGIN);
+        occurrenceNodes.sort(Comparator.comparingInt(node -> ((Number) node.getProperty(beginKey)).intValue()));
 
+        return occurrenceNodes;
+    }
+
+    private Map<String, Object> occurrence(int begin, int end, String value, String[] pos, String[] ne, Node tag) {
+        Map<String, Object> occurrence = new HashMap<>();
+        occurrence.put("begin", begin);
+        occurrence.put("end", end);
+        occurrence.put("value", value);
+        occurrence.put("pos", Arrays.asList(pos));
+        occurrence.put("ne", Arrays.asList(ne));
+        occurrence.put("tag", tag);
+
+        return occurrence;
+    }
+
+    private Map<String, Object> dependency(int source, int target, String type, String specific) {
+        Map<String, Object> dependency = new HashMap<>();
+        dependency.put("source", source);
+        dependency.put("target", target);
+        dependency.put("type", type);
+        dependency.put("specific", specific);
+
+        return dependency;
+    }
+
+    private String[] unpack(String packed) {
+        return packed.isEmpty() ? new String[0] : PACKED_SEPARATOR_PATTERN.split(packed);
+    }
+
+    private void storeUniversalDependenciesForSentence(Sentence sentence, Map<String, Node> tokenNodes) {
         sentence.getTypedDependencies().forEach(typedDependency -> {
-            if (!tokenIdsToNodeIds.containsKey(typedDependency.getSource()) || !tokenIdsToNodeIds.containsKey(typedDependency.getTarget())) {
+            Node sourceNode = tokenNodes.get(typedDependency.getSource());
+            Node targetNode = tokenNodes.get(typedDependency.getTarget());
+            if (sourceNode == null || targetNode == null) {
 //                LOG.info("source: {} or target: {} for typed dependency not found", typedDependency.getSource(), typedDependency.getTarget());
                 return;
             }
 
-            Node sourceNode = database.getNodeById(tokenIdsToNodeIds.get(typedDependency.getSource()));
-            Node targetNode = database.getNodeById(tokenIdsToNodeIds.get(typedDependency.getTarget()));
             relateTypedDependencySourceAndTarget(sourceNode, targetNode, typedDependency);
         });
     }
 
     private void relateTypedDependencySourceAndTarget(Node source, Node target, TypedDependency typedDependency) {
-        RelationshipType relationshipType = RelationshipType.withName(typedDependency.getName().toUpperCase());
+        RelationshipType relationshipType = DEPENDENCY_TYPES.computeIfAbsent(typedDependency.getName(), name -> RelationshipType.withName(name.toUpperCase()));
         Relationship relationship = source.createRelationshipTo(target, relationshipType);
         if (null != typedDependency.getSpecific()) {
             relationship.setProperty(configuration().getPropertyKeyFor(Properties.DEPENDENCY_SPECIFIC), typedDependency.getSpecific());
@@ -183,25 +539,34 @@ public class SentencePersister extends AbstractPersister implements Persister<Se
         }
     }
 
-    private void assignSentimentLabel(Sentence sentence, Node sentenceNode) {
-        int sentiment = sentence.getSentiment();
+    /**
+     * Replaces the sentiment label of a stored sentence, leaving the rest of it untouched.
+     */
+    public void storeSentiment(Node sentenceNode, int sentiment) {
         Label sentimentLabel = SentenceUtils.getDefaultLabelForSentimentLevel(sentiment);
         if (sentimentLabel == null) {
             return;
         }
-        sentenceNode.addLabel(configuration().getLabelFor(sentimentLabel));
-    }
-
-    private Node getTagOccurrenceInSentence(Node sentenceNode, TagOccurrence tagOccurrence) {
-        for (Relationship relationship : sentenceNode.getRelationships(configuration().getRelationshipFor(Relationships.SENTENCE_TAG_OCCURRENCE), Direction.OUTGOING)) {
-            Node otherNode = relationship.getEndNode();
-            if (otherNode.getProperty(configuration().getPropertyKeyFor(Properties.OCCURRENCE_BEGIN)).equals(tagOccurrence.getSpan().first())
-                    && otherNode.getProperty(configuration().getPropertyKeyFor(Properties.OCCURRENCE_END)).equals(tagOccurrence.getSpan().second())) {
-                return otherNode;
+        Label label = configuration().getLabelFor(sentimentLabel);
+        if (sentenceNode.hasLabel(label)) {
+            return;
+        }
+        for (int level : SentenceUtils.SENTIMENT_LEVELS) {
+            Label other = configuration().getLabelFor(SentenceUtils.getDefaultLabelForSentimentLevel(level));
+            if (sentenceNode.hasLabel(other)) {
+                sentenceNode.removeLabel(other);
             }
         }
+        sentenceNode.addLabel(label);
+    }
 
-        return null;
+    private void assignSentimentLabel(Sentence sentence, Node sentenceNode) {
+        int sentiment = sentence.getSentiment();
+        Label sentimentLabel = SentenceUtils.getDefaultLabelForSentimentLevel(sentiment);
+        if (sentimentLabel == null) {
+            return;
+        }
+        sentenceNode.addLabel(configuration().getLabelFor(sentimentLabel));
     }
 
     private void relateSentenceToPhrase(Node sentenceNode, Node phraseNode) {
@@ -228,25 +593,28 @@ public class SentencePersister extends AbstractPersister implements Persister<Se
     }
 
     private Node getOrCreatePhrase(Phrase phrase, String txId) {
-        Node node = database.findNode(configuration().getLabelFor(Labels.Phrase),
+        Node node = getCachedIfExist(configuration().getLabelFor(Labels.Phrase),
                 configuration().getPropertyKeyFor(Properties.CONTENT_VALUE),
                 phrase.getContent()
         );
 
         if (node == null) {
-            node = database.createNode(configuration().getLabelFor(Labels.Phrase));
+            node = createCachedNode(configuration().getLabelFor(Labels.Phrase), configuration().getPropertyKeyFor(Properties.CONTENT_VALUE), phrase.getContent());
             updatePhrase(phrase, node);
-        } else {
+        } else if (!getPhraseType(phrase).equals(node.getProperty(configuration().getPropertyKeyFor(Properties.PHRASE_TYPE), null))) {
             updatePhrase(phrase, node);
         }
 
         return node;
     }
 
+    private String getPhraseType(Phrase phrase) {
+        return phrase.getType() != null ? phrase.getType() : NLPDefaultValues.PHRASE_TYPE;
+    }
+
     private void updatePhrase(Phrase phrase, Node phraseNode) {
         phraseNode.setProperty(configuration().getPropertyKeyFor(Properties.CONTENT_VALUE), phrase.getContent());
-        String type = phrase.getType() != null ? phrase.getType() : NLPDefaultValues.PHRASE_TYPE;
-        phraseNode.setProperty(configuration().getPropertyKeyFor(Properties.PHRASE_TYPE), type);
+        phraseNode.setProperty(configuration().getPropertyKeyFor(Properties.PHRASE_TYPE), getPhraseType(phrase));
     }
 
     @Override
@@ -17,22 +17,31 @@ package com.graphaware.nlp.persistence.persisters;
 
 import com.graphaware.nlp.configuration.DynamicConfiguration;
 import com.graphaware.nlp.domain.Tag;
+import com.graphaware.nlp.domain.TagParentRelation;
+import com.graphaware.nlp.configuration.SettingsConstants;
 import com.graphaware.nlp.persistence.PersistenceRegistry;
+import com.graphaware.nlp.persistence.TagMerger;
 import com.graphaware.nlp.persistence.constants.Labels;
 import com.graphaware.nlp.persistence.constants.Properties;
 import com.graphaware.nlp.persistence.constants.Relationships;
 import com.graphaware.nlp.util.TagUtils;
 import com.graphaware.nlp.util.TypeConverter;
+import org.neo4j.graphdb.Direction;
 import org.neo4j.graphdb.GraphDatabaseService;
 import org.neo4j.graphdb.Label;
 import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Relationship;
+import org.neo4j.graphdb.Result;
 
 import java.util.*;
 
 public class TagPersister extends AbstractPersister implements Persister<Tag> {
 
+    private final TagMerger tagMerger;
+
     public TagPersister(GraphDatabaseService database, DynamicConfiguration dynamicConfiguration, PersistenceRegistry registry) {
         super(database, dynamicConfiguration, registry);
+        this.tagMerger = new TagMerger(database, this::merge, this::applyChanges);
     }
 
     @Override
@@ -54,55 +63,183 @@ public class TagPersister extends AbstractPersister implements Persister<Tag> {
 
     @Override
     public Node getOrCreate(Tag tag, String id, String txId) {
-        Node node = getIfExist(
+        Node node = getCachedIfExist(
                 configuration().getLabelFor(configuration().getLabelFor(Labels.Tag)),
                 configuration().getPropertyKeyFor(configuration().getPropertyKeyFor(Properties.PROPERTY_ID)),
                 tag.getId());
 
-        if (null == node) {
-            node = database.createNode(configuration().getLabelFor(Labels.Tag));
+        boolean created = null == node;
+        if (created) {
+            node = mergeTagNode(tag.getId());
+            created = isNew(node);
         }
+        store(node, tag, txId, new HashMap<>(), created);
 
-        if (shouldBeUpdated(tag, node)) {
-            assignNamedEntityOnTag(node, tag);
-            assignPartOfSpeechOnTag(node, tag);
-            storeExtraProperties(tag, node);
-        }
+        return node;
+    }
 
-        if (!checkSameTransaction(node, txId)) {
+    /**
+     * Resolves all the tags of a document at once: tags with the same id are merged, the existing tag
+     * nodes are fetched with a single lookup and the missing ones are created.
+     *
+     * @return the tag nodes by tag id, including the parents of the tags
+     */
+    public Map<String, Node> getOrCreateAll(Collection<Tag> tags, String txId) {
+        Map<String, Tag> merged = mergeById(tags);
+        Map<String, Node> nodes = findAll(merged.keySet());
+        merged.values().forEach(tag -> {
+            Node node = nodes.get(tag.getId());
+            boolean created = null == node;
+            if (created) {
+                node = mergeTagNode(tag.getId());
+                created = isNew(node);
+                nodes.put(tag.getId(), node);
+            }
+            store(node, tag, txId, nodes, created);
+        });
+
+        return nodes;
+    }
+
+    /**
+     * Existing tags are only read unless the tag brings new part of speech, named entities or extra
+     * properties, which are merged in place or, with the asyncTagMerge setting, by the {@link TagMerger}.
+     */
+    private void store(Node node, Tag tag, String txId, Map<String, Node> resolved, boolean created) {
+        boolean sameTransaction = !created && checkSameTransaction(node, txId);
+        if (created) {
             update(node, tag, tag.getId());
-            assignNamedEntityOnTag(node, tag);
-            assignPartOfSpeechOnTag(node, tag);
+            applyChanges(node, tag);
             setLastTransaction(node, txId);
-            storeTagParent(node, tag, txId);
+        } else if (shouldBeUpdated(tag, node)) {
+            if (useAsyncMerge()) {
+                tagMerger.submit(node.getId(), tag);
+            } else {
+                applyChanges(node, tag);
+                setLastTransaction(node, txId);
+            }
+        }
+        if (!tag.getParents().isEmpty() && !sameTransaction) {
+            storeTagParent(node, tag, txId, resolved);
         }
-        return node;
     }
 
-    private boolean shouldBeUpdated(Tag tag, Node tagNode) {
-        if (tagNode.hasProperty(configuration().getPropertyKeyFor(Properties.PART_OF_SPEECH))) {
-            String[] pos = (String[]) tagNode.getProperty(configuration().getPropertyKeyFor(Properties.PART_OF_SPEECH));
-            if (tag.getPosAsList().size() != pos.length) {
-                return true;
+    private void applyChanges(Node node, Tag tag) {
+        assignNamedEntityOnTag(node, tag);
+        assignPartOfSpeechOnTag(node, tag);
+        storeExtraProperties(tag, node);
+    }
+
+    private boolean useAsyncMerge() {
+        return configuration().hasSettingValue(SettingsConstants.ASYNC_TAG_MERGE)
+                && Boolean.valueOf(configuration().getSettingValueFor(SettingsConstants.ASYNC_TAG_MERGE).toString());
+    }
+
+    public TagMerger getTagMerger() {
+        return tagMerger;
+    }
+
+    private Map<String, Tag> mergeById(Collection<Tag> tags) {
+        Map<String, Tag> merged = new LinkedHashMap<>();
+        tags.forEach(tag -> {
+            Tag existing = merged.get(tag.getId());
+            if (existing == null) {
+                merged.put(tag.getId(), tag);
+            } else if (existing != tag) {
+                merged.put(tag.getId(), merge(existing, tag));
             }
-            List<String> original = Arrays.asList(pos);
+        });
 
-            if (tag.getPosAsList().stream().anyMatch((s) -> (!original.contains(s)))) {
-                return true;
+        return merged;
+    }
+
+    private Tag merge(Tag first, Tag second) {
+        Tag tag = new Tag(first.getLemma(), first.getLanguage());
+        tag.setPos(union(first.getPosAsList(), second.getPosAsList()));
+        tag.setNe(union(first.getNeAsList(), second.getNeAsList()));
+        first.getExtraProperties().forEach(tag::addProperties);
+        second.getExtraProperties().forEach(tag::addProperties);
+        first.getParents().forEach(tag::addParent);
+        second.getParents().forEach(tag::addParent);
+
+        return tag;
+    }
+
+    private List<String> union(List<String> first, List<String> second) {
+        List<String> values = new ArrayList<>(first);
+        second.stream()
+                .filter(value -> !values.contains(value))
+                .forEach(values::add);
+
+        return values;
+    }
+
+    /**
+     * Tags are created with a locked get-or-create, so concurrent documents introducing the same tag
+     * do not fail on the uniqueness constraint.
+     */
+    private Node mergeTagNode(String id) {
+        return mergeCachedNode(configuration().getLabelFor(Labels.Tag), configuration().getPropertyKeyFor(Properties.PROPERTY_ID), id);
+    }
+
+    /**
+     * A merged tag node without value was just created, otherwise it was committed by another
+     * transaction meanwhile.
+     */
+    private boolean isNew(Node node) {
+        return !node.hasProperty(configuration().getPropertyKeyFor(Properties.CONTENT_VALUE));
+    }
+
+    private Map<String, Node> findAll(Collection<String> ids) {
+        Map<String, Node> nodes = new HashMap<>();
+        Label label = configuration().getLabelFor(Labels.Tag);
+        String idKey = configuration().getPropertyKeyFor(Properties.PROPERTY_ID);
+        List<String> missing = new ArrayList<>();
+        ids.forEach(id -> {
+            Node node = getNodeIdCache().get(getDatabase(), label, idKey, id);
+            if (node != null) {
+                nodes.put(id, node);
+            } else {
+                missing.add(id);
             }
+        });
+        if (missing.isEmpty()) {
+            return nodes;
         }
-
-        if (tagNode.hasProperty(configuration().getPropertyKeyFor(Properties.NAMED_ENTITY))) {
-            String[] pos = (String[]) tagNode.getProperty(configuration().getPropertyKeyFor(Properties.NAMED_ENTITY));
-            if (tag.getNeAsList().size() != pos.length) {
-                return true;
+        String query = String.format("MATCH (n:`%s`) WHERE n.`%s` IN {ids} RETURN n",
+                label.name(),
+                idKey);
+        Map<String, Node> found = new HashMap<>();
+        try (Result result = getDatabase().execute(query, Collections.singletonMap("ids", missing))) {
+            while (result.hasNext()) {
+                Node node = (Node) result.next().get("n");
+                String id = String.valueOf(node.getProperty(idKey));
+                if (found.put(id, node) != null) {
+                    throw new RuntimeException("More than one node found");
+                }
+                getNodeIdCache().put(label, idKey, id, node);
             }
-            List<String> original = Arrays.asList(pos);
+        }
+        nodes.putAll(found);
 
-            for (String s : tag.getNeAsList()) {
-                if (!original.contains(s)) {
-                    return true;
-                }
+        return nodes;
+    }
+
+    /**
+     * @return true if the tag holds values missing from the node, values are only ever added to tags
+     */
+    private boolean shouldBeUpdated(Tag tag, Node tagNode) {
+        String[] pos = (String[]) tagNode.getProperty(configuration().getPropertyKeyFor(Properties.PART_OF_SPEECH), new String[0]);
+        List<String> originalPos = Arrays.asList(pos);
+        if (tag.getPosAsList().stream().anyMatch((s) -> (!originalPos.contains(s)))) {
+            return true;
+        }
+
+        String[] ne = (String[]) tagNode.getProperty(configuration().getPropertyKeyFor(Properties.NAMED_ENTITY), new String[0]);
+        List<String> originalNe = Arrays.asList(ne);
+        for (String s : tag.getNeAsList()) {
+            if (!originalNe.contains(s)) {
+                return true;
             }
         }
 
@@ -161,34 +298,57 @@ public class TagPersister extends AbstractPersister implements Persister<Tag> {
         }
     }
 
-    private void storeTagParent(Node tagNode, Tag tag, String txId) {
+    private void storeTagParent(Node tagNode, Tag tag, String txId, Map<String, Node> resolved) {
         if (tag.getParents() != null) {
             tag.getParents().stream().forEach((tagRelationship) -> {
                 Tag parent = tagRelationship.getParent();
-                Node parentTagNode = getOrCreate(parent, parent.getId(), txId);
-                long sourceId = tagNode.getId();
-                long targetId = parentTagNode.getId();
-                //@todo mode type and weight to config constants
-                String query = String.format("MATCH (source:`%s`), (target:`%s`) " +
-                        "WHERE id(source) = {source} AND id(target) = {target} " +
-                        "MERGE (source)-[r:`%s` {%s: {type} }]->(target) " +
-                        "ON CREATE SET r.%s = {weight}, r.source = {sourceId} ",
-                        configuration().getLabelFor(Labels.Tag),
-                        configuration().getLabelFor(Labels.Tag),
-                        Relationships.IS_RELATED_TO,
-                        "type",
-                        "weight");
-                Map<String, Object> parameters = new HashMap<>();
-                parameters.put("source", sourceId);
-                parameters.put("target", targetId);
-                parameters.put("type", tagRelationship.getRelation());
-                parameters.put("weight", tagRelationship.getWeight());
-                parameters.put("sourceId", tagRelationship.getSource());
-                getDatabase().execute(query, parameters);
+                Node parentTagNode = resolved.get(parent.getId());
+                if (parentTagNode == null) {
+                    parentTagNode = getOrCreate(parent, parent.getId(), txId);
+                    resolved.put(parent.getId(), parentTagNode);
+                }
+                mergeParentRelationship(tagNode, parentTagNode, tagRelationship);
             });
         }
     }
 
+    private void mergeParentRelationship(Node tagNode, Node parentTagNode, TagParentRelation tagRelationship) {
+        String typeKey = configuration().getPropertyKeyFor(Properties.RELATION_TYPE);
+        String weightKey = configuration().getPropertyKeyFor(Properties.RELATION_WEIGHT);
+        double weight = tagRelationship.getWeight();
+        Relationship relationship = findParentRelationship(tagNode, parentTagNode, typeKey, tagRelationship.getRelation());
+        if (relationship == null) {
+            relationship = tagNode.createRelationshipTo(parentTagNode, Relationships.IS_RELATED_TO);
+            if (tagRelationship.getRelation() != null) {
+                relationship.setProperty(typeKey, tagRelationship.getRelation());
+            }
+            relationship.setProperty(weightKey, weight);
+            if (tagRelationship.getSource() != null) {
+                relationship.setProperty(configuration().getPropertyKeyFor(Properties.RELATION_SOURCE), tagRelationship.getSource());
+            }
+        } else if (!Objects.equals(relationship.getProperty(weightKey, null), weight)) {
+            relationship.setProperty(weightKey, weight);
+        }
+    }
+
+    /**
+     * Looks for the relationship from the side with the fewest relationships of the type, hub tags
+     * can have thousands of them.
+     */
+    private Relationship findParentRelationship(Node tagNode, Node parentTagNode, String typeKey, String type) {
+        boolean fromTag = tagNode.getDegree(Relationships.IS_RELATED_TO, Direction.OUTGOING)
+                <= parentTagNode.getDegree(Relationships.IS_RELATED_TO, Direction.INCOMING);
+        Node start = fromTag ? tagNode : parentTagNode;
+        Node other = fromTag ? parentTagNode : tagNode;
+        for (Relationship relationship : start.getRelationships(Relationships.IS_RELATED_TO, fromTag ? Direction.OUTGOING : Direction.INCOMING)) {
+            if (relationship.getOtherNode(start).equals(other) && Objects.equals(relationship.getProperty(typeKey, null), type)) {
+                return relationship;
+            }
+        }
+
+        return null;
+    }
+
     private void checkNodeIsATag(Node tagNode) {
         Map<String, Object> allProperties = tagNode.getAllProperties();
         assert (tagNode.hasLabel(configuration().getLabelFor(Labels.Tag)));
@@ -0,0 +1,105 @@
+/*
+ * Copyright (c) 2013-2017 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package com.graphaware.nlp.processor;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.Weigher;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import com.graphaware.nlp.domain.AnnotatedText;
+import com.graphaware.nlp.util.HashFunctions;
+
+import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Bounded cache of annotation results, keyed by text hash, processor, pipeline and language and
+ * weighted by text length. Cached {@link AnnotatedText} instances are shared between callers and
+ * must not be modified.
+ */
+public class AnnotationCache {
+
+    private final Cache<AnnotationKey, AnnotatedText> cache;
+
+    public AnnotationCache(long maxCharacters) {
+        this.cache = CacheBuilder.newBuilder()
+                .maximumWeight(maxCharacters)
+                .weigher((Weigher<AnnotationKey, AnnotatedText>) (key, value) -> Math.max(1, key.textLength))
+                .recordStats()
+                .build();
+    }
+
+    public AnnotatedText annotate(TextProcessor processor, String text, String pipeline, String lang, Callable<AnnotatedText> loader) {
+        AnnotationKey key = new AnnotationKey(HashFunctions.MD5(text), processor.getClass().getName(), pipeline, lang, text.length());
+        try {
+            return cache.get(key, loader);
+        } catch (ExecutionException | UncheckedExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        }
+    }
+
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    public long size() {
+        return cache.size();
+    }
+
+    public CacheStats stats() {
+        return cache.stats();
+    }
+
+    private static class AnnotationKey {
+
+        private final String hash;
+        private final String processor;
+        private final String pipeline;
+        private final String lang;
+        private final int textLength;
+
+        AnnotationKey(String hash, String processor, String pipeline, String lang, int textLength) {
+            this.hash = hash;
+            this.processor = processor;
+            this.pipeline = pipeline;
+            this.lang = lang;
+            this.textLength = textLength;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            AnnotationKey that = (AnnotationKey) o;
+            return textLength == that.textLength
+                    && Objects.equals(hash, that.hash)
+                    && Objects.equals(processor, that.processor)
+                    && Objects.equals(pipeline, that.pipeline)
+                    && Objects.equals(lang, that.lang);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(hash, processor, pipeline, lang, textLength);
+        }
+    }
+}
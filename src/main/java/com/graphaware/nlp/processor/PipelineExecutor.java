@@ -0,0 +1,156 @@
+/*
+ * Copyright (c) 2013-2017 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package com.graphaware.nlp.processor;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.graphaware.nlp.dsl.result.PipelineStats;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded pool running the annotations of one pipeline. At most threads annotations run at the
+ * same time and at most maxQueued wait for a thread. Callers beyond that wait up to the admission
+ * timeout for a slot and are rejected afterwards.
+ */
+public class PipelineExecutor {
+
+    private final String processor;
+
+    private final String pipeline;
+
+    private final int threads;
+
+    private final long admissionTimeoutMillis;
+
+    private final ThreadPoolExecutor executor;
+
+    private final Semaphore admission;
+
+    private final AtomicLong submitted = new AtomicLong();
+
+    private final AtomicLong completed = new AtomicLong();
+
+    private final AtomicLong failed = new AtomicLong();
+
+    private final AtomicLong rejected = new AtomicLong();
+
+    private final AtomicLong dequeued = new AtomicLong();
+
+    private final AtomicLong totalQueueTime = new AtomicLong();
+
+    private final AtomicLong maxQueueTime = new AtomicLong();
+
+    public PipelineExecutor(String processor, String pipeline, int threads, int maxQueued, long admissionTimeoutMillis) {
+        this.processor = processor;
+        this.pipeline = pipeline;
+        this.threads = threads;
+        this.admissionTimeoutMillis = admissionTimeoutMillis;
+        this.admission = new Semaphore(threads + maxQueued);
+        this.executor = new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(threads + maxQueued),
+                new ThreadFactoryBuilder().setNameFormat("nlp-pipeline-" + pipeline + "-%d").setDaemon(true).build());
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    public <T> T execute(Callable<T> task) {
+        try {
+            if (!admission.tryAcquire(admissionTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                rejected.incrementAndGet();
+                throw new RuntimeException(String.format("Pipeline %s of processor %s is saturated, %d annotations running and %d waiting",
+                        pipeline, processor, executor.getActiveCount(), executor.getQueue().size()));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting for pipeline " + pipeline, e);
+        }
+        final long enqueued = System.currentTimeMillis();
+        // whoever flips started owns the admission slot: the task when it runs, the caller when it gives up first
+        final AtomicBoolean started = new AtomicBoolean();
+        Future<T> future;
+        try {
+            submitted.incrementAndGet();
+            future = executor.submit(() -> {
+                if (!started.compareAndSet(false, true)) {
+                    return null;
+                }
+                try {
+                    recordQueueTime(System.currentTimeMillis() - enqueued);
+                    return task.call();
+                } finally {
+                    admission.release();
+                }
+            });
+        } catch (RuntimeException e) {
+            failed.incrementAndGet();
+            admission.release();
+            throw e;
+        }
+        try {
+            T result = future.get();
+            completed.incrementAndGet();
+
+            return result;
+        } catch (InterruptedException e) {
+            failed.incrementAndGet();
+            future.cancel(true);
+            if (started.compareAndSet(false, true)) {
+                admission.release();
+            }
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting for pipeline " + pipeline, e);
+        } catch (ExecutionException e) {
+            failed.incrementAndGet();
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new RuntimeException(e.getCause());
+        }
+    }
+
+    private void recordQueueTime(long queueTime) {
+        dequeued.incrementAndGet();
+        totalQueueTime.addAndGet(queueTime);
+        maxQueueTime.accumulateAndGet(queueTime, Math::max);
+    }
+
+    public String getProcessor() {
+        return processor;
+    }
+
+    public String getPipeline() {
+        return pipeline;
+    }
+
+    public PipelineStats getStats() {
+        long started = dequeued.get();
+
+        return new PipelineStats(processor, pipeline, threads, executor.getActiveCount(), executor.getQueue().size(),
+                submitted.get(), completed.get(), failed.get(), rejected.get(),
+                started > 0 ? (double) totalQueueTime.get() / started : 0.0, maxQueueTime.get());
+    }
+
+    public void shutdown() {
+        executor.shutdown();
+    }
+}
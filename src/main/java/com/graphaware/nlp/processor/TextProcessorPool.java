@@ -0,0 +1,184 @@
+/*
+ * Copyright (c) 2013-2017 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package com.graphaware.nlp.processor;
+
+import com.graphaware.nlp.dsl.request.PipelineSpecification;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Pool of dedicated {@link TextProcessor} instances for one pipeline, so that concurrent annotations
+ * do not share the mutable state of a single instance. Instances are created and warmed up lazily,
+ * up to the pool size, and leased to one caller at a time.
+ */
+public class TextProcessorPool {
+
+    private static final Logger LOG = LoggerFactory.getLogger(TextProcessorPool.class);
+
+    private final Class<? extends TextProcessor> processorClass;
+
+    private final String pipeline;
+
+    private final PipelineSpecification pipelineSpecification;
+
+    private final int size;
+
+    private final long leaseTimeoutMillis;
+
+    private final BlockingQueue<TextProcessor> idle = new LinkedBlockingQueue<>();
+
+    private final AtomicInteger created = new AtomicInteger();
+
+    private final AtomicInteger leased = new AtomicInteger();
+
+    private final AtomicLong leases = new AtomicLong();
+
+    private final AtomicLong totalLeaseWait = new AtomicLong();
+
+    private volatile boolean unsupported = false;
+
+    private volatile boolean closed = false;
+
+    public TextProcessorPool(Class<? extends TextProcessor> processorClass, String pipeline, PipelineSpecification pipelineSpecification, int size, long leaseTimeoutMillis) {
+        this.processorClass = processorClass;
+        this.pipeline = pipeline;
+        this.pipelineSpecification = pipelineSpecification;
+        this.size = size;
+        this.leaseTimeoutMillis = leaseTimeoutMillis;
+    }
+
+    /**
+     * @return a dedicated instance, or null when new instances cannot serve this pipeline, in
+     * which case the shared instance has to be used
+     */
+    public TextProcessor lease() {
+        if (closed) {
+            return null;
+        }
+        long start = System.currentTimeMillis();
+        TextProcessor processor = idle.poll();
+        if (processor == null) {
+            processor = createIfBelowSize();
+        }
+        if (unsupported && processor != null) {
+            // polled or created before another thread found the pipeline unsupported
+            idle.offer(processor);
+        }
+        if (unsupported) {
+            return null;
+        }
+        try {
+            if (processor == null) {
+                processor = idle.poll(leaseTimeoutMillis, TimeUnit.MILLISECONDS);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting for a processor instance of pipeline " + pipeline, e);
+        }
+        if (processor == null) {
+            throw new RuntimeException(String.format("No processor instance of pipeline %s available after %d ms", pipeline, leaseTimeoutMillis));
+        }
+        leased.incrementAndGet();
+        leases.incrementAndGet();
+        totalLeaseWait.addAndGet(System.currentTimeMillis() - start);
+
+        return processor;
+    }
+
+    public void release(TextProcessor processor) {
+        leased.decrementAndGet();
+        if (closed) {
+            dispose(processor);
+            return;
+        }
+        idle.offer(processor);
+    }
+
+    /**
+     * Removes the pipeline from the idle instances and drops them, instances still leased are
+     * dropped when released.
+     */
+    public void close() {
+        closed = true;
+        TextProcessor processor;
+        while ((processor = idle.poll()) != null) {
+            dispose(processor);
+        }
+    }
+
+    private void dispose(TextProcessor processor) {
+        created.decrementAndGet();
+        try {
+            processor.removePipeline(pipeline);
+        } catch (Exception e) {
+            LOG.warn("Could not remove pipeline " + pipeline + " from a processor instance", e);
+        }
+    }
+
+    private TextProcessor createIfBelowSize() {
+        int current;
+        do {
+            current = created.get();
+            if (current >= size) {
+                return null;
+            }
+        } while (!created.compareAndSet(current, current + 1));
+        try {
+            TextProcessor processor = processorClass.newInstance();
+            processor.init();
+            if (!processor.checkPipeline(pipeline)) {
+                if (pipelineSpecification == null) {
+                    LOG.warn("Pipeline " + pipeline + " cannot be created on new instances of " + processorClass.getName() + ", using the shared instance");
+                    unsupported = true;
+                    created.decrementAndGet();
+
+                    return null;
+                }
+                processor.createPipeline(pipelineSpecification);
+            }
+            LOG.info("Created processor instance " + (current + 1) + "/" + size + " for pipeline " + pipeline);
+
+            return processor;
+        } catch (Exception e) {
+            created.decrementAndGet();
+            throw new RuntimeException("Unable to create an instance of " + processorClass.getName() + " for pipeline " + pipeline, e);
+        }
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public int getCreated() {
+        return created.get();
+    }
+
+    public int getLeased() {
+        return leased.get();
+    }
+
+    public double getAverageLeaseWait() {
+        long count = leases.get();
+
+        return count > 0 ? (double) totalLeaseWait.get() / count : 0.0;
+    }
+}
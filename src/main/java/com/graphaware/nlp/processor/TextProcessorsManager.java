@@ -15,26 +15,65 @@
  */
 package com.graphaware.nlp.processor;
 
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.graphaware.nlp.annotation.NLPTextProcessor;
 import com.graphaware.nlp.dsl.request.PipelineSpecification;
+import com.graphaware.nlp.dsl.result.PipelineStats;
+import com.graphaware.nlp.dsl.result.ProcessorStatus;
 import com.graphaware.nlp.util.ServiceLoader;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
+import java.util.function.IntSupplier;
+import java.util.stream.Collectors;
 
 public class TextProcessorsManager {
 
     private static final Logger LOG = LoggerFactory.getLogger(TextProcessorsManager.class);
     private static final String DEFAULT_TEXT_PROCESSOR = "com.graphaware.nlp.processor.stanford.StanfordTextProcessor";
+    private static final int DEFAULT_PIPELINE_THREADS = 4;
+    private static final int MAX_QUEUED_PER_THREAD = 16;
+    private static final long ADMISSION_TIMEOUT_MILLIS = 60000L;
 
-    private final Map<String, TextProcessor> textProcessors = new HashMap<>();
+    private final Map<String, TextProcessor> textProcessors = new TreeMap<>();
+
+    private final Map<String, PipelineExecutor> pipelineExecutors = new ConcurrentHashMap<>();
+
+    private final Map<String, TextProcessorPool> processorPools = new ConcurrentHashMap<>();
+
+    private final Set<String> unpooledPipelines = ConcurrentHashMap.newKeySet();
+
+    private final Map<String, PipelineSpecification> pipelineSpecifications = new ConcurrentHashMap<>();
+
+    private volatile IntSupplier processorPoolSize = () -> 0;
+
+    private final Map<String, CompletableFuture<TextProcessor>> initialisations = new ConcurrentHashMap<>();
+
+    private final Map<String, Long> initialisationTimes = new ConcurrentHashMap<>();
+
+    private final Map<String, String> initialisationErrors = new ConcurrentHashMap<>();
+
+    private final ExecutorService warmupExecutor = Executors.newSingleThreadExecutor(new ThreadFactoryBuilder()
+            .setNameFormat("nlp-processor-warmup-%d")
+            .setDaemon(true)
+            .build());
 
     public TextProcessorsManager() {
         loadTextProcessors();
-        initiateTextProcessors();
     }
 
     private void loadTextProcessors() {
@@ -56,17 +95,123 @@ public class TextProcessorsManager {
 //        });
     }
 
-    private void initiateTextProcessors() {
-        textProcessors.values().forEach(textProcessor -> {
-            textProcessor.init();
+    /**
+     * Starts the initialisation of the given processors on the background warm-up thread, all the
+     * processors when the list is empty. Processors already initialised or initialising are left as they are.
+     */
+    public void warmup(List<String> names) {
+        List<String> processors = names == null || names.isEmpty() ? new ArrayList<>(textProcessors.keySet()) : names;
+        processors.forEach(name -> {
+            checkProcessorExists(name);
+            startInitialisation(name, true);
         });
     }
 
-    public TextProcessor getTextProcessor(String name) {
+    /**
+     * Waits until the given processors are initialised or the timeout expires.
+     */
+    public void awaitInitialisation(List<String> names, long timeoutMillis) {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        List<String> processors = names == null || names.isEmpty() ? new ArrayList<>(textProcessors.keySet()) : names;
+        for (String name : processors) {
+            CompletableFuture<TextProcessor> initialisation = initialisations.get(name);
+            if (initialisation == null) {
+                continue;
+            }
+            try {
+                initialisation.get(Math.max(0, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (ExecutionException | TimeoutException e) {
+                // reported by the status
+            }
+        }
+    }
+
+    public List<ProcessorStatus> getProcessorStatus(String name) {
+        return textProcessors.keySet().stream()
+                .filter(processor -> name == null || name.isEmpty() || processor.equals(name))
+                .sorted()
+                .map(processor -> new ProcessorStatus(processor, getProcessorState(processor),
+                        initialisationTimes.getOrDefault(processor, 0L), initialisationErrors.get(processor)))
+                .collect(Collectors.toList());
+    }
+
+    private String getProcessorState(String name) {
+        CompletableFuture<TextProcessor> initialisation = initialisations.get(name);
+        if (initialisation != null) {
+            return initialisation.isDone() ? ProcessorStatus.READY : ProcessorStatus.INITIALISING;
+        }
+
+        return initialisationErrors.containsKey(name) ? ProcessorStatus.FAILED : ProcessorStatus.REGISTERED;
+    }
+
+    public boolean isInitialised(String name) {
+        CompletableFuture<TextProcessor> initialisation = initialisations.get(name);
+        return initialisation != null && initialisation.isDone() && !initialisation.isCompletedExceptionally();
+    }
+
+    private CompletableFuture<TextProcessor> startInitialisation(String name, boolean background) {
+        CompletableFuture<TextProcessor> initialisation = new CompletableFuture<>();
+        CompletableFuture<TextProcessor> existing = initialisations.putIfAbsent(name, initialisation);
+        if (existing != null) {
+            return existing;
+        }
+        if (background) {
+            warmupExecutor.execute(() -> initialise(name, initialisation));
+        } else {
+            initialise(name, initialisation);
+        }
+
+        return initialisation;
+    }
+
+    private void initialise(String name, CompletableFuture<TextProcessor> initialisation) {
+        TextProcessor processor = textProcessors.get(name);
+        long start = System.currentTimeMillis();
+        LOG.info("Initialising text processor " + name);
+        try {
+            processor.init();
+            synchronized (processor) {
+                pipelineSpecifications.forEach((key, pipelineSpecification) -> {
+                    if (key.startsWith(processor.getClass().getName() + "/") && !processor.checkPipeline(pipelineSpecification.getName())) {
+                        processor.createPipeline(pipelineSpecification);
+                    }
+                });
+                initialisationErrors.remove(name);
+                initialisationTimes.put(name, System.currentTimeMillis() - start);
+                initialisation.complete(processor);
+            }
+            LOG.info("Text processor " + name + " initialised in " + (System.currentTimeMillis() - start) + "ms");
+        } catch (Exception e) {
+            LOG.error("Error while initialising text processor " + name, e);
+            initialisationErrors.put(name, String.valueOf(e.getMessage()));
+            initialisations.remove(name, initialisation);
+            initialisation.completeExceptionally(e);
+        }
+    }
+
+    private TextProcessor getInitialisedProcessor(String name) {
+        try {
+            return startInitialisation(name, false).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting for the initialisation of processor " + name, e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Processor " + name + " failed to initialise", e.getCause());
+        }
+    }
+
+    private void checkProcessorExists(String name) {
         if (!textProcessors.containsKey(name)) {
             throw new RuntimeException("Processor with name '" + name + "' does not exist");
         }
-        return textProcessors.get(name);
+    }
+
+    public TextProcessor getTextProcessor(String name) {
+        checkProcessorExists(name);
+        return getInitialisedProcessor(name);
     }
 
     public TextProcessor retrieveTextProcessor(String processor, String pipeline) {
@@ -92,12 +237,23 @@ public class TextProcessorsManager {
         return newTP;
     }
 
+    /**
+     * @return the processors already initialised, processors not used yet are not loaded by this call
+     */
     public Map<String, TextProcessor> getTextProcessors() {
-        return textProcessors;
+        Map<String, TextProcessor> initialised = new HashMap<>();
+        textProcessors.forEach((name, processor) -> {
+            if (isInitialised(name)) {
+                initialised.put(name, processor);
+            }
+        });
+
+        return initialised;
     }
 
     public TextProcessor getDefaultProcessor() {
-        return textProcessors.get(getDefaultProcessorName());
+        String name = getDefaultProcessorName();
+        return name != null ? getInitialisedProcessor(name) : null;
     }
 
     public Set<String> getTextProcessorNames() {
@@ -109,22 +265,137 @@ public class TextProcessorsManager {
         if (processorName == null || !textProcessors.containsKey(processorName)) {
             throw new RuntimeException("Processor " + processorName + " does not exist");
         }
-        TextProcessor processor = textProcessors.get(processorName);
+        TextProcessor processor = getInitialisedProcessor(processorName);
         processor.createPipeline(pipelineSpecification);
+        pipelineSpecifications.put(getPipelineKey(processor, pipelineSpecification.getName()), pipelineSpecification);
 
         LOG.info("Created pipeline " + pipelineSpecification.getName() + " for processor " + processorName);
 
         return new PipelineCreationResult(0, "");
     }
 
+    /**
+     * Registers a pipeline without loading its processor: the pipeline is created right away when the
+     * processor is already initialised, otherwise when the processor is initialised.
+     */
+    public void registerPipeline(PipelineSpecification pipelineSpecification) {
+        String processorName = pipelineSpecification.getTextProcessor();
+        if (processorName == null || !textProcessors.containsKey(processorName)) {
+            throw new RuntimeException("Processor " + processorName + " does not exist");
+        }
+        TextProcessor processor = textProcessors.get(processorName);
+        synchronized (processor) {
+            pipelineSpecifications.put(getPipelineKey(processor, pipelineSpecification.getName()), pipelineSpecification);
+            if (isInitialised(processorName)) {
+                processor.createPipeline(pipelineSpecification);
+                LOG.info("Created pipeline " + pipelineSpecification.getName() + " for processor " + processorName);
+            }
+        }
+    }
+
     public void removePipeline(String processor, String pipeline) {
         if (!textProcessors.containsKey(processor)) {
             throw new RuntimeException("No text processor with name " + processor + " available");
         }
 
         // @todo extract to its own method
-        TextProcessor textProcessor = textProcessors.get(processor);
+        TextProcessor textProcessor = getInitialisedProcessor(processor);
         textProcessor.removePipeline(pipeline);
+        pipelineSpecifications.remove(getPipelineKey(textProcessor, pipeline));
+        TextProcessorPool pool = processorPools.remove(getPipelineKey(textProcessor, pipeline));
+        if (pool != null) {
+            pool.close();
+        }
+        PipelineExecutor executor = pipelineExecutors.remove(getPipelineKey(textProcessor, pipeline));
+        if (executor != null) {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Forgets the pipelines found without processor pool, the pool size is read again on their next
+     * annotation, called when the configuration changes.
+     */
+    public void resetUnpooledPipelines() {
+        unpooledPipelines.clear();
+    }
+
+    /**
+     * Sets the number of dedicated processor instances kept for each pipeline, read when the first
+     * annotation of a pipeline is run. With 0 all the annotations use the shared instance.
+     */
+    public void setProcessorPoolSize(IntSupplier processorPoolSize) {
+        this.processorPoolSize = processorPoolSize;
+        unpooledPipelines.clear();
+    }
+
+    /**
+     * Runs an annotation task on the bounded pool of the given pipeline, sized by the number of
+     * threads of the pipeline, with a processor instance leased from the pipeline instances pool
+     * when pooling is enabled. The calling thread waits for the result.
+     */
+    public <T> T execute(TextProcessor processor, String pipeline, Function<TextProcessor, T> task) {
+        String key = getPipelineKey(processor, pipeline);
+        TextProcessorPool pool = getProcessorPool(key, processor, pipeline);
+
+        return pipelineExecutors.computeIfAbsent(key, k -> createPipelineExecutor(processor, pipeline))
+                .execute(() -> {
+                    TextProcessor instance = pool != null ? pool.lease() : null;
+                    if (instance == null) {
+                        return task.apply(processor);
+                    }
+                    try {
+                        return task.apply(instance);
+                    } finally {
+                        pool.release(instance);
+                    }
+                });
+    }
+
+    private TextProcessorPool getProcessorPool(String key, TextProcessor processor, String pipeline) {
+        TextProcessorPool pool = processorPools.get(key);
+        if (pool != null || unpooledPipelines.contains(key)) {
+            return pool;
+        }
+        int size = processorPoolSize.getAsInt();
+        if (size <= 0) {
+            unpooledPipelines.add(key);
+            return null;
+        }
+
+        return processorPools.computeIfAbsent(key, k -> new TextProcessorPool(processor.getClass(), pipeline, pipelineSpecifications.get(k), size, ADMISSION_TIMEOUT_MILLIS));
+    }
+
+    public List<PipelineStats> getPipelineStats(String pipeline) {
+        return pipelineExecutors.entrySet().stream()
+                .filter(entry -> pipeline == null || pipeline.isEmpty() || entry.getValue().getPipeline().equals(pipeline))
+                .map(entry -> {
+                    PipelineStats stats = entry.getValue().getStats();
+                    TextProcessorPool pool = processorPools.get(entry.getKey());
+                    if (pool != null) {
+                        stats.instances = pool.getCreated();
+                        stats.instancesInUse = pool.getLeased();
+                        stats.averageLeaseWait = pool.getAverageLeaseWait();
+                    }
+
+                    return stats;
+                })
+                .collect(Collectors.toList());
+    }
+
+    private PipelineExecutor createPipelineExecutor(TextProcessor processor, String pipeline) {
+        int threads = processor.getPipelineInfos().stream()
+                .filter(pipelineInfo -> pipelineInfo.getName().equals(pipeline) && pipelineInfo.getNumberOfThreads() > 0)
+                .map(pipelineInfo -> (int) pipelineInfo.getNumberOfThreads())
+                .findFirst()
+                .orElse(DEFAULT_PIPELINE_THREADS);
+        LOG.info("Creating executor with " + threads + " threads for pipeline " + pipeline);
+
+        return new PipelineExecutor(processor.getClass().getName(), pipeline, threads, threads * MAX_QUEUED_PER_THREAD, ADMISSION_TIMEOUT_MILLIS);
+    }
+
+    private String getPipelineKey(TextProcessor processor, String pipeline) {
+        return processor.getClass().getName() + "/" + pipeline;
     }
 
     // @todo is it really needed ?
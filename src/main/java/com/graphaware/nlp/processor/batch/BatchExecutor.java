@@ -0,0 +1,151 @@
+/*
+ * Copyright (c) 2013-2017 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package com.graphaware.nlp.processor.batch;
+
+import com.graphaware.common.log.LoggerFactory;
+import com.graphaware.nlp.dsl.result.BatchResult;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.logging.Log;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+/**
+ * Runs a CPU bound worker function over the input on a bounded pool of threads and hands the
+ * outputs to a writer, one transaction per batch. Transactions are committed on a dedicated
+ * thread, so the next batch is processed while the previous one is being written.
+ */
+public class BatchExecutor {
+
+    private static final Log LOG = LoggerFactory.getLogger(BatchExecutor.class);
+
+    private final GraphDatabaseService database;
+
+    private final int concurrency;
+
+    private final int batchSize;
+
+    public BatchExecutor(GraphDatabaseService database, int concurrency, int batchSize) {
+        if (concurrency < 1 || batchSize < 1) {
+            throw new IllegalArgumentException("Concurrency and batch size must be greater than 0");
+        }
+        this.database = database;
+        this.concurrency = concurrency;
+        this.batchSize = batchSize;
+    }
+
+    public <I, O> List<BatchResult> execute(Iterator<I> input, Function<I, O> worker, BiConsumer<I, O> writer, Function<I, String> identifier) {
+        ExecutorService workers = Executors.newFixedThreadPool(concurrency);
+        ExecutorService committer = Executors.newSingleThreadExecutor();
+        List<BatchResult> results = new ArrayList<>();
+        try {
+            Future<BatchResult> pendingCommit = null;
+            long batchNumber = 0;
+            while (input.hasNext()) {
+                final long start = System.currentTimeMillis();
+                final long currentBatch = batchNumber++;
+                final List<I> items = new ArrayList<>();
+                final List<Future<O>> outputs = new ArrayList<>();
+                while (input.hasNext() && items.size() < batchSize) {
+                    I item = input.next();
+                    items.add(item);
+                    outputs.add(workers.submit(() -> worker.apply(item)));
+                }
+                if (pendingCommit != null) {
+                    results.add(waitFor(pendingCommit));
+                }
+                pendingCommit = committer.submit(() -> commit(currentBatch, start, items, outputs, writer, identifier));
+            }
+            if (pendingCommit != null) {
+                results.add(waitFor(pendingCommit));
+            }
+        } finally {
+            workers.shutdownNow();
+            committer.shutdownNow();
+        }
+
+        return results;
+    }
+
+    /**
+     * Writes the processed items of a batch in one transaction. When it fails, the items are written
+     * again one transaction each, so that only the failing ones are reported.
+     */
+    private <I, O> BatchResult commit(long batchNumber, long start, List<I> items, List<Future<O>> outputs, BiConsumer<I, O> writer, Function<I, String> identifier) throws InterruptedException {
+        List<String> errors = new ArrayList<>();
+        List<I> ready = new ArrayList<>();
+        List<O> readyOutputs = new ArrayList<>();
+        int processed = 0;
+        int failed = 0;
+        for (int i = 0; i < items.size(); ++i) {
+            I item = items.get(i);
+            try {
+                readyOutputs.add(outputs.get(i).get());
+                ready.add(item);
+            } catch (ExecutionException e) {
+                LOG.error("Error while processing item " + identifier.apply(item), e.getCause());
+                errors.add(identifier.apply(item) + ": " + e.getCause().getMessage());
+                failed++;
+            }
+        }
+        try (Transaction tx = database.beginTx()) {
+            for (int i = 0; i < ready.size(); ++i) {
+                writer.accept(ready.get(i), readyOutputs.get(i));
+            }
+            tx.success();
+        } catch (Exception e) {
+            LOG.warn("Error while committing batch " + batchNumber + ", committing its items one by one", e);
+            for (int i = 0; i < ready.size(); ++i) {
+                I item = ready.get(i);
+                try (Transaction tx = database.beginTx()) {
+                    writer.accept(item, readyOutputs.get(i));
+                    tx.success();
+                } catch (Exception itemException) {
+                    LOG.error("Error while storing item " + identifier.apply(item), itemException);
+                    errors.add(identifier.apply(item) + ": " + itemException.getMessage());
+                    failed++;
+                    continue;
+                }
+                processed++;
+            }
+            ready.clear();
+        }
+        processed += ready.size();
+        long timeTaken = System.currentTimeMillis() - start;
+        LOG.info("Batch " + batchNumber + " completed: " + processed + " processed, " + failed + " failed in " + timeTaken + "ms");
+
+        return new BatchResult(batchNumber, processed, failed, timeTaken, errors);
+    }
+
+    private BatchResult waitFor(Future<BatchResult> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting for batch to be committed", e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        }
+    }
+}
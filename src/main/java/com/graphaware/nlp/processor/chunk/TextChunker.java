@@ -0,0 +1,84 @@
+/*
+ * Copyright (c) 2013-2017 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package com.graphaware.nlp.processor.chunk;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Splits a text in chunks of at most chunkSize characters. Chunks are cut at paragraph boundaries,
+ * paragraphs longer than chunkSize are cut at sentence boundaries. A single sentence longer than
+ * chunkSize is kept whole.
+ */
+public final class TextChunker {
+
+    private static final Pattern PARAGRAPH_SEPARATOR = Pattern.compile("\\n\\s*\\n");
+
+    private static final Pattern SENTENCE_SEPARATOR = Pattern.compile("(?<=[.!?])\\s+");
+
+    public static List<TextChunk> split(String text, int chunkSize) {
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("Chunk size must be greater than 0");
+        }
+        List<int[]> segments = new ArrayList<>();
+        for (int[] paragraph : segments(text, 0, text.length(), PARAGRAPH_SEPARATOR)) {
+            if (paragraph[1] - paragraph[0] > chunkSize) {
+                segments.addAll(segments(text, paragraph[0], paragraph[1], SENTENCE_SEPARATOR));
+            } else {
+                segments.add(paragraph);
+            }
+        }
+
+        List<TextChunk> chunks = new ArrayList<>();
+        int i = 0;
+        while (i < segments.size()) {
+            int start = segments.get(i)[0];
+            int end = segments.get(i)[1];
+            ++i;
+            while (i < segments.size() && segments.get(i)[1] - start <= chunkSize) {
+                end = segments.get(i)[1];
+                ++i;
+            }
+            chunks.add(new TextChunk(text.substring(start, end), start));
+        }
+
+        return chunks;
+    }
+
+    private static List<int[]> segments(String text, int from, int to, Pattern separator) {
+        List<int[]> segments = new ArrayList<>();
+        Matcher matcher = separator.matcher(text).region(from, to);
+        int start = from;
+        while (matcher.find()) {
+            addSegment(segments, text, start, matcher.start());
+            start = matcher.end();
+        }
+        addSegment(segments, text, start, to);
+
+        return segments;
+    }
+
+    private static void addSegment(List<int[]> segments, String text, int start, int end) {
+        if (!text.substring(start, end).trim().isEmpty()) {
+            segments.add(new int[]{start, end});
+        }
+    }
+
+    private TextChunker() {
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright (c) 2013-2017 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package com.graphaware.nlp.processor.queue;
+
+import com.graphaware.nlp.dsl.request.AnnotationRequest;
+
+public class AnnotationJob {
+
+    public enum Status {
+        QUEUED,
+        RUNNING,
+        COMPLETED,
+        FAILED
+    }
+
+    private final String jobId;
+
+    private final AnnotationRequest request;
+
+    private final long submittedAt;
+
+    private volatile Status status = Status.QUEUED;
+
+    private volatile long startedAt;
+
+    private volatile long completedAt;
+
+    private volatile String error;
+
+    public AnnotationJob(String jobId, AnnotationRequest request) {
+        this.jobId = jobId;
+        this.request = request;
+        this.submittedAt = System.currentTimeMillis();
+    }
+
+    public String getJobId() {
+        return jobId;
+    }
+
+    public AnnotationRequest getRequest() {
+        return request;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public long getSubmittedAt() {
+        return submittedAt;
+    }
+
+    public long getStartedAt() {
+        return startedAt;
+    }
+
+    public long getCompletedAt() {
+        return completedAt;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    void start() {
+        startedAt = System.currentTimeMillis();
+        status = Status.RUNNING;
+    }
+
+    void complete() {
+        completedAt = System.currentTimeMillis();
+        status = Status.COMPLETED;
+    }
+
+    void fail(String error) {
+        this.error = error;
+        completedAt = System.currentTimeMillis();
+        status = Status.FAILED;
+    }
+}
@@ -0,0 +1,196 @@
+/*
+ * Copyright (c) 2013-2017 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package com.graphaware.nlp.processor.queue;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.graphaware.nlp.NLPManager;
+import com.graphaware.nlp.dsl.request.AnnotationRequest;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Transaction;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded queue of annotation requests drained by background workers, each job is annotated and then
+ * persisted in its own transaction, outside of the transaction that submitted it. Requests are
+ * rejected when the queue is full.
+ */
+public class AnnotationQueue {
+
+    private static final Logger LOG = LoggerFactory.getLogger(AnnotationQueue.class);
+
+    private static final int FINISHED_JOBS_RETENTION_SIZE = 10000;
+
+    private static final long POLL_INTERVAL_MS = 100;
+
+    private static final long SHUTDOWN_TIMEOUT_SECONDS = 30;
+
+    private final BlockingQueue<AnnotationJob> queue;
+
+    private final Map<String, AnnotationJob> activeJobs = new ConcurrentHashMap<>();
+
+    private final Cache<String, AnnotationJob> finishedJobs = CacheBuilder.newBuilder()
+            .maximumSize(FINISHED_JOBS_RETENTION_SIZE)
+            .expireAfterWrite(1, TimeUnit.HOURS)
+            .build();
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    private final AtomicLong completed = new AtomicLong();
+
+    private final AtomicLong failed = new AtomicLong();
+
+    private final NLPManager nlpManager;
+
+    private final GraphDatabaseService database;
+
+    private final ExecutorService workers;
+
+    private volatile boolean stopped = false;
+
+    public AnnotationQueue(NLPManager nlpManager, GraphDatabaseService database, int workersCount, int capacity) {
+        this.nlpManager = nlpManager;
+        this.database = database;
+        this.queue = new LinkedBlockingQueue<>(capacity);
+        this.workers = Executors.newFixedThreadPool(workersCount, new ThreadFactoryBuilder()
+                .setDaemon(true)
+                .setNameFormat("nlp-annotation-worker-%d")
+                .build());
+        for (int i = 0; i < workersCount; ++i) {
+            workers.execute(this::drain);
+        }
+    }
+
+    public String submit(AnnotationRequest request) {
+        if (stopped) {
+            throw new RuntimeException("The annotation queue is shut down");
+        }
+        AnnotationJob job = new AnnotationJob(UUID.randomUUID().toString(), request);
+        activeJobs.put(job.getJobId(), job);
+        if (!queue.offer(job)) {
+            activeJobs.remove(job.getJobId());
+            throw new RuntimeException("The annotation queue is full (" + queue.size() + " jobs), retry later");
+        }
+        // the queue may have been shut down and emptied since the first check
+        if (stopped && queue.remove(job)) {
+            activeJobs.remove(job.getJobId());
+            throw new RuntimeException("The annotation queue is shut down");
+        }
+
+        return job.getJobId();
+    }
+
+    public AnnotationJob getJob(String jobId) {
+        AnnotationJob job = activeJobs.get(jobId);
+
+        return job != null ? job : finishedJobs.getIfPresent(jobId);
+    }
+
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    public long getCompleted() {
+        return completed.get();
+    }
+
+    public long getFailed() {
+        return failed.get();
+    }
+
+    /**
+     * Stops accepting jobs, lets the workers finish the jobs in flight and marks the jobs still queued
+     * as failed.
+     */
+    public void shutdown() {
+        stopped = true;
+        workers.shutdown();
+        try {
+            if (!workers.awaitTermination(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                workers.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            workers.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+        AnnotationJob job;
+        while ((job = queue.poll()) != null) {
+            job.fail("The annotation queue was shut down");
+            failed.incrementAndGet();
+            finishedJobs.put(job.getJobId(), job);
+            activeJobs.remove(job.getJobId());
+        }
+    }
+
+    private void drain() {
+        while (!stopped && !Thread.currentThread().isInterrupted()) {
+            AnnotationJob job;
+            try {
+                job = queue.poll(POLL_INTERVAL_MS, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            if (job != null) {
+                process(job);
+            }
+        }
+    }
+
+    private void process(AnnotationJob job) {
+        inFlight.incrementAndGet();
+        job.start();
+        AnnotationRequest request = job.getRequest();
+        try {
+            if (request.getChunkSize() > 0) {
+                // chunks are committed one by one, outside of any transaction of this thread
+                nlpManager.annotateTextAndPersist(request);
+            } else {
+                try (Transaction tx = database.beginTx()) {
+                    nlpManager.annotateTextAndPersist(request);
+                    tx.success();
+                }
+            }
+            job.complete();
+            completed.incrementAndGet();
+        } catch (Exception e) {
+            LOG.error("Error while processing annotation job " + job.getJobId() + " for text " + request.getId(), e);
+            job.fail(e.getMessage());
+            failed.incrementAndGet();
+        } finally {
+            finishedJobs.put(job.getJobId(), job);
+            activeJobs.remove(job.getJobId());
+            inFlight.decrementAndGet();
+        }
+    }
+}
@@ -3,13 +3,19 @@ package com.graphaware.nlp.util;
 import com.graphaware.common.log.LoggerFactory;
 import com.graphaware.nlp.configuration.DynamicConfiguration;
 import com.graphaware.nlp.configuration.SettingsConstants;
+import com.graphaware.nlp.dsl.request.PipelineSpecification;
 import com.graphaware.nlp.processor.TextProcessor;
+import org.codehaus.jackson.map.ObjectMapper;
 import org.neo4j.logging.Log;
 
+import java.io.IOException;
+
 public class ProcessorUtils {
 
     private static final Log LOG = LoggerFactory.getLogger(ProcessorUtils.class);
 
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
     public static String getPipeline(String pipelineName, DynamicConfiguration configuration) {
         if (pipelineName == null && !configuration.hasSettingValue(SettingsConstants.DEFAULT_PIPELINE)) {
             LOG.info("Defaulting to default pipeline : " + SettingsConstants.DEFAULT_PIPELINE);
@@ -24,4 +30,22 @@ public class ProcessorUtils {
         return pipelineName;
     }
 
+    /**
+     * Hash of the text processor class, the pipeline name and the pipeline definition when the
+     * pipeline is a custom one, identifying what a text has been annotated with.
+     */
+    public static String getPipelineFingerprint(String textProcessor, String pipeline, DynamicConfiguration configuration) {
+        PipelineSpecification pipelineSpecification = pipeline != null ? configuration.loadPipeline(pipeline) : null;
+        String definition = "";
+        if (pipelineSpecification != null) {
+            try {
+                definition = MAPPER.writeValueAsString(pipelineSpecification);
+            } catch (IOException e) {
+                throw new RuntimeException("Error while serializing pipeline " + pipeline, e);
+            }
+        }
+
+        return HashFunctions.MD5(textProcessor + "|" + pipeline + "|" + definition);
+    }
+
 }
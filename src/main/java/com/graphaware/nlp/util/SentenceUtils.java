@@ -18,8 +18,17 @@ package com.graphaware.nlp.util;
 import com.graphaware.nlp.persistence.constants.Labels;
 import org.neo4j.graphdb.Label;
 
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
 public class SentenceUtils {
 
+    /**
+     * The sentiment levels mapped to a label, from very negative to very positive.
+     */
+    public static final List<Integer> SENTIMENT_LEVELS = Collections.unmodifiableList(Arrays.asList(0, 1, 2, 3, 4));
+
     public static Label getDefaultLabelForSentimentLevel(int level) {
         switch (level) {
             case 0:
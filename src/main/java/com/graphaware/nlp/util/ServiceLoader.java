@@ -15,24 +15,49 @@
  */
 package com.graphaware.nlp.util;
 
+import com.graphaware.nlp.annotation.NLPModuleExtension;
+import com.graphaware.nlp.annotation.NLPTextProcessor;
+import com.graphaware.nlp.annotation.processing.ExtensionIndexProcessor;
 import com.graphaware.nlp.extension.NLPExtension;
 import com.graphaware.nlp.processor.TextProcessor;
 import org.reflections.Reflections;
+import org.reflections.util.ClasspathHelper;
+import org.reflections.util.ConfigurationBuilder;
+import org.reflections.util.FilterBuilder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
 import java.lang.annotation.Annotation;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
 import java.security.AccessController;
 import java.security.PrivilegedAction;
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeMap;
 
 public class ServiceLoader {
 
+    /**
+     * System property forcing the scan of the whole classpath instead of reading the extension indexes.
+     */
+    public static final String CLASSPATH_SCAN_PROPERTY = "com.graphaware.nlp.classpathScan";
+
+    private static final String SCANNED_PACKAGE = "com.graphaware";
+
     private static Reflections reflections;
+    private static Reflections unindexedReflections;
+    private static boolean unindexedScanned;
     private static final Logger LOG = LoggerFactory.getLogger(ServiceLoader.class);
 
     public static NLPExtension loadNLPExtension(String extensionClazz) {
@@ -81,7 +106,7 @@ public class ServiceLoader {
 
     public static <T> Map<String, T> loadInstances(Class<? extends Annotation> annotationClass) {
         Map<String, Class<T>> loadedClass = loadClass(annotationClass);
-        Map<String, T> result = new HashMap<>();
+        Map<String, T> result = new TreeMap<>();
 
         if (loadedClass == null) {
             return result;
@@ -106,14 +131,124 @@ public class ServiceLoader {
     }
 
     public static <T, A extends Annotation> Map<String, Class<T>> loadClass(Class<A> annotation) {
-        return loadClassByAnnotation(annotation);
+        if (Boolean.getBoolean(CLASSPATH_SCAN_PROPERTY)) {
+            return loadClassByAnnotation(annotation);
+        }
+        Map<String, Class<T>> loader = loadClassFromIndex(annotation);
+        Reflections unindexed = getUnindexedReflections();
+        if (unindexed != null) {
+            unindexed.getTypesAnnotatedWith(annotation).forEach(item -> loader.putIfAbsent(item.getName(), (Class<T>) item));
+        }
+
+        return loader;
+    }
+
+    /**
+     * Reads the classes listed in the indexes generated at compile time by
+     * {@link ExtensionIndexProcessor}, merging the indexes of all the jars.
+     */
+    private static <T, A extends Annotation> Map<String, Class<T>> loadClassFromIndex(Class<A> annotation) {
+        ClassLoader classLoader = ServiceLoader.class.getClassLoader();
+        Map<String, Class<T>> loader = new TreeMap<>();
+        Enumeration<URL> indexes;
+        try {
+            indexes = classLoader.getResources(ExtensionIndexProcessor.INDEX_LOCATION + annotation.getName());
+        } catch (IOException e) {
+            LOG.warn("Cannot read the extension index for " + annotation.getName(), e);
+            return loader;
+        }
+
+        while (indexes.hasMoreElements()) {
+            URL index = indexes.nextElement();
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(index.openStream(), StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    String className = line.trim();
+                    if (className.isEmpty() || className.startsWith("#")) {
+                        continue;
+                    }
+                    try {
+                        Class<?> clazz = Class.forName(className, false, classLoader);
+                        if (clazz.isAnnotationPresent(annotation)) {
+                            loader.put(clazz.getName(), (Class<T>) clazz);
+                        }
+                    } catch (ClassNotFoundException | LinkageError e) {
+                        LOG.warn("Class " + className + " listed in " + index + " cannot be loaded, skipping");
+                    }
+                }
+            } catch (IOException e) {
+                LOG.warn("Cannot read the extension index " + index, e);
+            }
+        }
+
+        return loader;
+    }
+
+    /**
+     * Prepares the scan of the classpath entries holding classes under com.graphaware but no extension
+     * index, so extensions built without {@link ExtensionIndexProcessor} are still found next to the
+     * indexed ones.
+     */
+    private static synchronized Reflections getUnindexedReflections() {
+        if (unindexedScanned) {
+            return unindexedReflections;
+        }
+        unindexedScanned = true;
+        ClassLoader classLoader = ServiceLoader.class.getClassLoader();
+        Set<String> indexedRoots = new HashSet<>();
+        for (Class<? extends Annotation> annotation : Arrays.asList(NLPTextProcessor.class, NLPModuleExtension.class)) {
+            String resource = ExtensionIndexProcessor.INDEX_LOCATION + annotation.getName();
+            try {
+                Enumeration<URL> indexes = classLoader.getResources(resource);
+                while (indexes.hasMoreElements()) {
+                    String index = indexes.nextElement().toExternalForm();
+                    indexedRoots.add(normalizeRoot(index.substring(0, index.length() - resource.length())));
+                }
+            } catch (IOException e) {
+                LOG.warn("Cannot read the extension index for " + annotation.getName(), e);
+            }
+        }
+
+        List<URL> unindexed = new ArrayList<>();
+        for (URL root : ClasspathHelper.forPackage(SCANNED_PACKAGE, classLoader)) {
+            if (!indexedRoots.contains(normalizeRoot(root.toExternalForm()))) {
+                unindexed.add(root);
+            }
+        }
+        if (unindexed.isEmpty()) {
+            return null;
+        }
+        LOG.info("No extension index found in " + unindexed + ", scanning them");
+        AccessController.doPrivileged(new PrivilegedAction<Void>() {
+            public Void run() {
+                unindexedReflections = new Reflections(new ConfigurationBuilder()
+                        .setUrls(unindexed)
+                        .addClassLoader(classLoader)
+                        .filterInputsBy(new FilterBuilder().includePackage(SCANNED_PACKAGE)));
+                return null;
+            }
+        });
+
+        return unindexedReflections;
+    }
+
+    private static String normalizeRoot(String root) {
+        String normalized = root.startsWith("jar:") ? root.substring("jar:".length()) : root;
+        if (normalized.endsWith("!/")) {
+            normalized = normalized.substring(0, normalized.length() - 2);
+        }
+        if (normalized.endsWith("/")) {
+            normalized = normalized.substring(0, normalized.length() - 1);
+        }
+
+        return normalized;
     }
 
     private static <T, A extends Annotation> Map<String, Class<T>> loadClassByAnnotation(Class<A> annotation) {
         if (reflections == null) {
-            loadReflections("com.graphaware");
+            loadReflections(SCANNED_PACKAGE);
         }
-        Map<String, Class<T>> loader = new HashMap<>();
+        Map<String, Class<T>> loader = new TreeMap<>();
         Set<Class<?>> providers = reflections.getTypesAnnotatedWith(annotation);
         providers.stream().forEach((item) -> {
             loader.put(item.getName(), (Class<T>) item);
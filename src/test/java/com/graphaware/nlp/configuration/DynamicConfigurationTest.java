@@ -98,6 +98,33 @@ public class DynamicConfigurationTest extends EmbeddedDatabaseIntegrationTest {
         .hasSettingValue(SettingsConstants.FALLBACK_LANGUAGE));
     }
 
+    @Test
+    public void testChangesAreVisibleOnceCommitted() {
+        DynamicConfiguration configuration = new DynamicConfiguration(getDatabase());
+        try (Transaction tx = getDatabase().beginTx()) {
+            configuration.updateInternalSetting("committed", "yes");
+            assertFalse(configuration.hasSettingValue("committed"));
+            tx.success();
+        }
+        assertEquals("yes", configuration.getSettingValueFor("committed"));
+
+        try (Transaction tx = getDatabase().beginTx()) {
+            configuration.updateInternalSetting("rolledBack", "yes");
+            tx.failure();
+        }
+        assertFalse(configuration.hasSettingValue("rolledBack"));
+    }
+
+    @Test
+    public void testChangesWrittenToTheStoreDirectlyAreVisible() {
+        DynamicConfiguration configuration = new DynamicConfiguration(getDatabase());
+        try (Transaction tx = getDatabase().beginTx()) {
+            keyValueStore.set("GA__NLP__SETTING_direct", "yes");
+            tx.success();
+        }
+        assertEquals("yes", configuration.getSettingValueFor("direct"));
+    }
+
     private void clearDb() {
         try (Transaction tx = getDatabase().beginTx()) {
             getDatabase().execute("MATCH (n) DETACH DELETE n");
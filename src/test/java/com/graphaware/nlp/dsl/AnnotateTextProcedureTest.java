@@ -7,6 +7,8 @@ import org.junit.Test;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
 
 import static org.junit.Assert.*;
 
@@ -35,6 +37,41 @@ public class AnnotateTextProcedureTest extends NLPIntegrationTest {
         tester.assertSentenceNodesCount(1);
     }
 
+    @Test
+    public void testUnchangedTextIsNotAnnotatedAgainUnlessForced() {
+        clearDb();
+        executeInTransaction("CALL ga.nlp.annotate({text: 'hello my name is Frank', id: 'test-unchanged', checkLanguage: false})", emptyConsumer());
+        executeInTransaction("MATCH (n:AnnotatedText {id: 'test-unchanged'}) SET n.marker = true", emptyConsumer());
+        executeInTransaction("CALL ga.nlp.annotate({text: 'hello my name is Frank', id: 'test-unchanged', checkLanguage: false})", emptyConsumer());
+        executeInTransaction("MATCH (n:AnnotatedText {id: 'test-unchanged'})-[r:CONTAINS_SENTENCE]->() RETURN n.hash AS hash, n.marker AS marker, count(r) AS sentences", (result -> {
+            assertTrue(result.hasNext());
+            Map<String, Object> row = result.next();
+            assertNotNull(row.get("hash"));
+            assertEquals(true, row.get("marker"));
+            assertEquals(1L, row.get("sentences"));
+        }));
+
+        executeInTransaction("MATCH (n:AnnotatedText {id: 'test-unchanged'}) SET n.numTerms = -1", emptyConsumer());
+        executeInTransaction("CALL ga.nlp.annotate({text: 'hello my name is Frank', id: 'test-unchanged', checkLanguage: false, force: true})", emptyConsumer());
+        executeInTransaction("MATCH (n:AnnotatedText {id: 'test-unchanged'}) RETURN n.numTerms AS numTerms", (result -> {
+            assertTrue(((Number) result.next().get("numTerms")).intValue() > 0);
+        }));
+
+        executeInTransaction("MATCH (n:AnnotatedText {id: 'test-unchanged'}) SET n.numTerms = -1, n.textProcessor = 'com.example.OtherTextProcessor'", emptyConsumer());
+        executeInTransaction("CALL ga.nlp.annotate({text: 'hello my name is Frank', id: 'test-unchanged', checkLanguage: false})", emptyConsumer());
+        executeInTransaction("MATCH (n:AnnotatedText {id: 'test-unchanged'}) RETURN n.numTerms AS numTerms, n.textProcessor AS textProcessor", (result -> {
+            Map<String, Object> row = result.next();
+            assertTrue(((Number) row.get("numTerms")).intValue() > 0);
+            assertNotEquals("com.example.OtherTextProcessor", row.get("textProcessor"));
+        }));
+
+        executeInTransaction("CALL ga.nlp.annotate({text: 'hello my name is John', id: 'test-unchanged', checkLanguage: false})", emptyConsumer());
+        executeInTransaction("MATCH (n:AnnotatedText {id: 'test-unchanged'})-[:CONTAINS_SENTENCE]->()-[:HAS_TAG]->(t:Tag) WHERE toLower(t.value) = 'john' RETURN count(t) AS tags", (result -> {
+            assertTrue(result.hasNext());
+            assertEquals(1L, result.next().get("tags"));
+        }));
+    }
+
     @Test
     public void testTextAnnotationOnMultipleNodes() {
         clearDb();
@@ -49,6 +86,117 @@ public class AnnotateTextProcedureTest extends NLPIntegrationTest {
         }));
     }
 
+    @Test
+    public void testBatchAnnotationOfTextsViaProcedure() {
+        clearDb();
+        executeInTransaction("UNWIND {texts} AS text CREATE (n:Tweet) SET n.text = text", Collections.singletonMap("texts", SHORT_TEXTS), emptyConsumer());
+        executeInTransaction("CALL ga.nlp.annotate.batch({query: 'MATCH (n:Tweet) RETURN id(n) AS id, n.text AS text', batchSize: 3, concurrency: 2, checkLanguage: false}) YIELD batch, processed, failed RETURN sum(processed) AS processed, sum(failed) AS failed, count(batch) AS batches", (result -> {
+            assertTrue(result.hasNext());
+            Map<String, Object> row = result.next();
+            assertEquals(10L, row.get("processed"));
+            assertEquals(0L, row.get("failed"));
+            assertEquals(4L, row.get("batches"));
+        }));
+
+        TestNLPGraph tester = new TestNLPGraph(getDatabase());
+        tester.assertAnnotatedTextNodesCount(10);
+    }
+
+    @Test
+    public void testInvalidRowsAreReportedWithoutFailingTheirBatch() {
+        clearDb();
+        executeInTransaction("CALL ga.nlp.annotate.batch({input: [{id: 'valid-1', text: 'hello my name is Frank'}, {id: 'invalid'}, {id: 'valid-2', text: 'hello my name is John'}], batchSize: 10, checkLanguage: false}) YIELD processed, failed, errors RETURN processed, failed, errors", (result -> {
+            Map<String, Object> row = result.next();
+            assertEquals(2L, row.get("processed"));
+            assertEquals(1L, row.get("failed"));
+            List<String> errors = (List<String>) row.get("errors");
+            assertEquals(1, errors.size());
+            assertTrue(errors.get(0).startsWith("invalid"));
+        }));
+
+        TestNLPGraph tester = new TestNLPGraph(getDatabase());
+        tester.assertAnnotatedTextNodesCount(2);
+    }
+
+    @Test
+    public void testAsyncAnnotationIsProcessedByBackgroundWorkers() throws Exception {
+        clearDb();
+        AtomicReference<String> jobId = new AtomicReference<>();
+        executeInTransaction("CALL ga.nlp.annotate.async({text: 'hello my name is Frank', id: 'test-async', checkLanguage: false}) YIELD result RETURN result", (result -> {
+            assertTrue(result.hasNext());
+            jobId.set(result.next().get("result").toString());
+        }));
+
+        AtomicReference<String> status = new AtomicReference<>();
+        for (int i = 0; i < 100 && !"COMPLETED".equals(status.get()); ++i) {
+            Thread.sleep(50);
+            executeInTransaction("CALL ga.nlp.annotate.async.status({jobId}) YIELD status RETURN status", Collections.singletonMap("jobId", jobId.get()), (result -> {
+                status.set(result.next().get("status").toString());
+            }));
+        }
+        assertEquals("COMPLETED", status.get());
+
+        TestNLPGraph tester = new TestNLPGraph(getDatabase());
+        tester.assertAnnotatedTextNodesCount(1);
+        tester.assertSentenceNodesCount(1);
+    }
+
+    @Test
+    public void testAsyncAnnotationIsStoredInChunks() throws Exception {
+        clearDb();
+        AtomicReference<String> jobId = new AtomicReference<>();
+        executeInTransaction("CALL ga.nlp.annotate.async({text: {text}, id: 'test-async-chunked', checkLanguage: false, chunkSize: 25}) YIELD result RETURN result",
+                Collections.singletonMap("text", "hello my name is John.\n\nI am working for IBM.\n\nI live in Italy"), (result -> {
+            jobId.set(result.next().get("result").toString());
+        }));
+
+        AtomicReference<String> status = new AtomicReference<>();
+        for (int i = 0; i < 100 && !"COMPLETED".equals(status.get()); ++i) {
+            Thread.sleep(50);
+            executeInTransaction("CALL ga.nlp.annotate.async.status({jobId}) YIELD status RETURN status", Collections.singletonMap("jobId", jobId.get()), (result -> {
+                status.set(result.next().get("status").toString());
+            }));
+        }
+        assertEquals("COMPLETED", status.get());
+
+        TestNLPGraph tester = new TestNLPGraph(getDatabase());
+        tester.assertAnnotatedTextNodesCount(1);
+        tester.assertSentenceNodesCount(3);
+    }
+
+    @Test
+    public void testAsyncAnnotationsAreRejectedAfterShutdown() {
+        clearDb();
+        AtomicReference<String> jobId = new AtomicReference<>();
+        executeInTransaction("CALL ga.nlp.annotate.async({text: 'hello my name is Frank', id: 'test-async-shutdown', checkLanguage: false}) YIELD result RETURN result", (result -> {
+            jobId.set(result.next().get("result").toString());
+        }));
+        getNLPManager().shutdown();
+        executeInTransaction("CALL ga.nlp.annotate.async.status({jobId}) YIELD status RETURN status", Collections.singletonMap("jobId", jobId.get()), (result -> {
+            assertNotEquals("QUEUED", result.next().get("status"));
+        }));
+        try {
+            executeInTransaction("CALL ga.nlp.annotate.async({text: 'hello my name is John', id: 'test-async-rejected', checkLanguage: false})", emptyConsumer());
+            fail("The annotation should be rejected");
+        } catch (Exception e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testChunkSizeIsRejectedWithinTheCallingTransaction() {
+        clearDb();
+        try {
+            executeInTransaction("CALL ga.nlp.annotate({text: 'hello my name is John', id: 'test-chunked', checkLanguage: false, chunkSize: 10})", emptyConsumer());
+            fail("The annotation should be rejected");
+        } catch (Exception e) {
+            // expected
+        }
+        executeInTransaction("MATCH (n:AnnotatedText {id: 'test-chunked'}) RETURN count(n) AS c", (result -> {
+            assertEquals(0L, result.next().get("c"));
+        }));
+    }
+
     @Test
     public void testExceptionIsThrownWhenLanguageCannotBeDetected() {
         try {
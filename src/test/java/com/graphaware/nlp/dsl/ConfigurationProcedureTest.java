@@ -1,6 +1,7 @@
 package com.graphaware.nlp.dsl;
 
 import com.graphaware.nlp.NLPIntegrationTest;
+import com.graphaware.nlp.configuration.ConfigurationSnapshot;
 import org.junit.Test;
 import org.neo4j.graphdb.Label;
 import org.neo4j.graphdb.RelationshipType;
@@ -40,6 +41,39 @@ public class ConfigurationProcedureTest extends NLPIntegrationTest {
         }));
     }
 
+    @Test
+    public void testLookupKeysAreIndexedWithTheMappedLabels() throws Exception {
+        executeInTransaction("CALL ga.nlp.config.set('LABEL_Tag', 'Token')", emptyConsumer());
+        getNLPManager().getSchemaManager().ensureSchemaAsync().get();
+        executeInTransaction("CALL ga.nlp.schema.status() YIELD label, property, indexed, unique RETURN label, property, indexed, unique", (result -> {
+            boolean found = false;
+            while (result.hasNext()) {
+                Map<String, Object> record = result.next();
+                assertTrue((Boolean) record.get("indexed"));
+                if (record.get("label").equals("Token")) {
+                    found = true;
+                    assertEquals("id", record.get("property"));
+                    assertTrue((Boolean) record.get("unique"));
+                }
+            }
+            assertTrue(found);
+        }));
+    }
+
+    @Test
+    public void testDuplicatedLookupKeysFallBackToAPlainIndex() throws Exception {
+        executeInTransaction("CALL ga.nlp.config.set('LABEL_Tag', 'DuplicatedToken')", emptyConsumer());
+        executeInTransaction("CREATE (:DuplicatedToken {id: 'a'}), (:DuplicatedToken {id: 'a'})", emptyConsumer());
+        getNLPManager().getSchemaManager().ensureSchemaAsync().get();
+        executeInTransaction("CALL ga.nlp.schema.status() YIELD label, property, indexed, unique WHERE label = 'DuplicatedToken' RETURN property, indexed, unique", (result -> {
+            assertTrue(result.hasNext());
+            Map<String, Object> record = result.next();
+            assertEquals("id", record.get("property"));
+            assertTrue((Boolean) record.get("indexed"));
+            assertFalse((Boolean) record.get("unique"));
+        }));
+    }
+
     @Test
     public void testSetMultipleConfigurationValuesViaProcedure() {
         Map<String, Object> map = new HashMap<>();
@@ -55,4 +89,18 @@ public class ConfigurationProcedureTest extends NLPIntegrationTest {
         }));
     }
 
+    @Test
+    public void testConfigurationSnapshotIsSwappedOnUpdate() {
+        ConfigurationSnapshot before = getNLPManager().getConfiguration().getSnapshot();
+        Label tag = Label.label("Tag");
+        assertSame(tag, before.getLabelFor(tag));
+        executeInTransaction("CALL ga.nlp.config.set('LABEL_Tag', 'Token')", emptyConsumer());
+
+        ConfigurationSnapshot after = getNLPManager().getConfiguration().getSnapshot();
+        assertTrue(after.getVersion() > before.getVersion());
+        assertEquals("Token", after.getLabelFor(tag).name());
+        assertSame(after.getLabelFor(tag), after.getLabelFor(Label.label("Tag")));
+        assertSame(tag, before.getLabelFor(tag));
+    }
+
 }
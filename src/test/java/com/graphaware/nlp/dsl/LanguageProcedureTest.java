@@ -1,8 +1,11 @@
 package com.graphaware.nlp.dsl;
 
 import com.graphaware.nlp.NLPIntegrationTest;
+import com.graphaware.nlp.language.LanguageDetectionResult;
+import com.graphaware.nlp.language.LanguageManager;
 import org.junit.Test;
 
+import java.util.Arrays;
 import java.util.Map;
 
 import static org.junit.Assert.*;
@@ -27,4 +30,15 @@ public class LanguageProcedureTest extends NLPIntegrationTest {
         }));
     }
 
+    @Test
+    public void testLanguageDetectionIsConsistentForRepeatedAndBatchedTexts() {
+        LanguageManager languageManager = LanguageManager.getInstance();
+        String text = "Mary was running in the park with her dog";
+        LanguageDetectionResult detection = languageManager.detect(text);
+        assertEquals("en", detection.getLanguage());
+        assertTrue(detection.isSupported());
+        assertEquals("en", languageManager.detect(text).getLanguage());
+        assertEquals(Arrays.asList("en", "n/a"), languageManager.detectLanguages(Arrays.asList(text, "com.graphaware.neo4j")));
+    }
+
 }
@@ -15,11 +15,71 @@ public class TextProcessorsProcedureTest extends NLPIntegrationTest {
 
     @Test
     public void testGetPipelineInformationsProcedure() {
+        executeInTransaction("CALL ga.nlp.processor.getPipelines", emptyConsumer());
+        assertFalse(getNLPManager().getTextProcessorsManager().isInitialised(StubTextProcessor.class.getName()));
+        getNLPManager().getTextProcessorsManager().getTextProcessor(StubTextProcessor.class.getName());
         executeInTransaction("CALL ga.nlp.processor.getPipelines", (result -> {
             assertTrue(result.hasNext());
         }));
     }
 
+    @Test
+    public void testPipelineStatsAreRecordedForAnnotations() {
+        clearDb();
+        executeInTransaction("CALL ga.nlp.annotate({text: 'hello my name is Frank', id: 'stats-1', textProcessor: '" + StubTextProcessor.class.getName() + "', pipeline: 'tokenizer', checkLanguage: false})", emptyConsumer());
+        executeInTransaction("CALL ga.nlp.processor.getPipelineStats('tokenizer') YIELD pipeline, threads, submitted, completed, rejected RETURN pipeline, threads, submitted, completed, rejected", (result -> {
+            assertTrue(result.hasNext());
+            Map<String, Object> row = result.next();
+            assertEquals("tokenizer", row.get("pipeline"));
+            assertTrue((Long) row.get("threads") > 0);
+            assertTrue((Long) row.get("submitted") >= 1);
+            assertEquals(row.get("submitted"), row.get("completed"));
+            assertEquals(0L, row.get("rejected"));
+        }));
+    }
+
+    @Test
+    public void testAnnotationsUsePooledProcessorInstancesWhenEnabled() {
+        clearDb();
+        executeInTransaction("CALL ga.nlp.config.setting.set('processorPoolSize', 2)", emptyConsumer());
+        executeInTransaction("CALL ga.nlp.annotate({text: 'hello my name is Frank', id: 'pool-1', textProcessor: '" + StubTextProcessor.class.getName() + "', pipeline: 'tokenizer', checkLanguage: false})", emptyConsumer());
+        executeInTransaction("CALL ga.nlp.processor.getPipelineStats('tokenizer') YIELD instances, instancesInUse RETURN instances, instancesInUse", (result -> {
+            assertTrue(result.hasNext());
+            Map<String, Object> row = result.next();
+            assertEquals(1L, row.get("instances"));
+            assertEquals(0L, row.get("instancesInUse"));
+        }));
+        executeInTransaction("MATCH (n:AnnotatedText {id: 'pool-1'}) RETURN n", (result -> assertTrue(result.hasNext())));
+    }
+
+    @Test
+    public void testProcessorPoolIsCreatedWhenEnabledAfterUnpooledAnnotations() {
+        clearDb();
+        executeInTransaction("CALL ga.nlp.annotate({text: 'hello my name is Frank', id: 'pool-a', textProcessor: '" + StubTextProcessor.class.getName() + "', pipeline: 'tokenizer', checkLanguage: false})", emptyConsumer());
+        executeInTransaction("CALL ga.nlp.processor.getPipelineStats('tokenizer') YIELD instances RETURN instances", (result -> {
+            assertEquals(0L, result.next().get("instances"));
+        }));
+        executeInTransaction("CALL ga.nlp.config.setting.set('processorPoolSize', 2)", emptyConsumer());
+        executeInTransaction("CALL ga.nlp.annotate({text: 'hello my name is John', id: 'pool-b', textProcessor: '" + StubTextProcessor.class.getName() + "', pipeline: 'tokenizer', checkLanguage: false})", emptyConsumer());
+        executeInTransaction("CALL ga.nlp.processor.getPipelineStats('tokenizer') YIELD instances RETURN instances", (result -> {
+            assertEquals(1L, result.next().get("instances"));
+        }));
+    }
+
+    @Test
+    public void testWarmupInitialisesTheGivenProcessors() {
+        executeInTransaction("CALL ga.nlp.processor.warmup(['" + StubTextProcessor.class.getName() + "'], 10000) YIELD processor, state RETURN processor, state", (result -> {
+            assertTrue(result.hasNext());
+            Map<String, Object> row = result.next();
+            assertEquals(StubTextProcessor.class.getName(), row.get("processor"));
+            assertEquals("READY", row.get("state"));
+            assertFalse(result.hasNext());
+        }));
+        executeInTransaction("CALL ga.nlp.processor.status('" + StubTextProcessor.class.getName() + "') YIELD state RETURN state", (result -> {
+            assertEquals("READY", result.next().get("state"));
+        }));
+    }
+
     @Test
     public void testAddPipeline() {
         clearDb();
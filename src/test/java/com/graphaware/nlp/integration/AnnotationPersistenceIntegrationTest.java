@@ -3,8 +3,12 @@ package com.graphaware.nlp.integration;
 import com.graphaware.nlp.NLPIntegrationTest;
 import com.graphaware.nlp.NLPManager;
 import com.graphaware.nlp.configuration.SettingsConstants;
+import com.graphaware.nlp.domain.AnnotatedText;
+import com.graphaware.nlp.domain.Sentence;
 import com.graphaware.nlp.domain.SentimentLabels;
+import com.graphaware.nlp.dsl.request.AnnotationRequest;
 import com.graphaware.nlp.dsl.request.PipelineSpecification;
+import com.graphaware.nlp.dsl.result.BatchResult;
 import com.graphaware.nlp.module.NLPConfiguration;
 import com.graphaware.nlp.persistence.constants.Labels;
 import com.graphaware.nlp.persistence.constants.Relationships;
@@ -22,7 +26,9 @@ import org.neo4j.graphdb.Transaction;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.stream.Collectors;
 
 import static org.junit.Assert.*;
 
@@ -225,6 +231,27 @@ public class AnnotationPersistenceIntegrationTest extends NLPIntegrationTest {
         tester.assertSentenceWithIdHasSentimentLabel("123_0", SentimentLabels.VeryPositive.toString());
     }
 
+    @Test
+    public void testSentimentCanBeAppliedInBatch() {
+        try (Transaction tx = getDatabase().beginTx()) {
+            manager.annotateTextAndPersist("hello my name is John. I am working for IBM", "123", StubTextProcessor.class.getName(), TextProcessor.DEFAULT_PIPELINE, false, true);
+            manager.annotateTextAndPersist("I live in Italy. I like pizza", "456", StubTextProcessor.class.getName(), TextProcessor.DEFAULT_PIPELINE, false, true);
+            tx.success();
+        }
+
+        try (Transaction tx = getDatabase().beginTx()) {
+            List<Node> nodes = getDatabase().findNodes(Label.label("AnnotatedText")).stream().collect(Collectors.toList());
+            List<BatchResult> results = manager.applySentimentInBatch(nodes, StubTextProcessor.class.getName(), 2, 1);
+            assertEquals(2, results.size());
+            assertEquals(0, results.stream().mapToLong(result -> result.failed).sum());
+            tx.success();
+        }
+
+        TestNLPGraph tester = new TestNLPGraph(getDatabase());
+        tester.assertSentenceWithIdHasSentimentLabel("123_1", SentimentLabels.VeryPositive.toString());
+        tester.assertSentenceWithIdHasSentimentLabel("456_0", SentimentLabels.VeryPositive.toString());
+    }
+
     @Test
     public void testAnnotationRunWithPipelineDefaultFromUserConfig() {
         manager.getConfiguration().updateInternalSetting(SettingsConstants.DEFAULT_PIPELINE, TextProcessor.DEFAULT_PIPELINE);
@@ -275,6 +302,97 @@ public class AnnotationPersistenceIntegrationTest extends NLPIntegrationTest {
         tester.assertNodesCount("test", 0);
     }
 
+    @Test
+    public void testOnlyChangedSentencesAreRewrittenOnReannotation() {
+        try (Transaction tx = getDatabase().beginTx()) {
+            manager.annotateTextAndPersist("hello my name is John. I am working for IBM. I live in Italy", "inc",
+                    StubTextProcessor.class.getName(), TextProcessor.DEFAULT_PIPELINE, false, false);
+            getDatabase().execute("MATCH (s:Sentence {id: 'inc_1'}) SET s.kept = true");
+            tx.success();
+        }
+        try (Transaction tx = getDatabase().beginTx()) {
+            manager.annotateTextAndPersist("hello my name is John. I work for Google. I am working for IBM. I live in Italy", "inc",
+                    StubTextProcessor.class.getName(), TextProcessor.DEFAULT_PIPELINE, false, false);
+            tx.success();
+        }
+
+        TestNLPGraph tester = new TestNLPGraph(getDatabase());
+        tester.assertSentenceNodesCount(4);
+        try (Transaction tx = getDatabase().beginTx()) {
+            Map<String, Object> kept = getDatabase().execute("MATCH (s:Sentence {kept: true}) RETURN s.id AS id, s.sentenceNumber AS number").next();
+            assertEquals("inc_2", kept.get("id"));
+            assertEquals(2, kept.get("number"));
+            assertEquals(1L, getDatabase().execute("MATCH (:AnnotatedText {id: 'inc'})-[:FIRST_SENTENCE]->(s:Sentence {id: 'inc_0'}) RETURN count(*) AS c").next().get("c"));
+            assertEquals(4L, getDatabase().execute("MATCH (:AnnotatedText {id: 'inc'})-[:CONTAINS_SENTENCE]->(s) RETURN count(s) AS c").next().get("c"));
+            assertEquals(3L, getDatabase().execute("MATCH (:AnnotatedText {id: 'inc'})-[:FIRST_SENTENCE]->()-[:NEXT_SENTENCE*]->(s) RETURN count(s) AS c").next().get("c"));
+            tx.success();
+        }
+    }
+
+    @Test
+    public void testTagsSharedBySentencesAreStoredOnce() {
+        try (Transaction tx = getDatabase().beginTx()) {
+            manager.annotateTextAndPersist("John likes Rome. John visits Rome", "shared",
+                    StubTextProcessor.class.getName(), TextProcessor.DEFAULT_PIPELINE, false, false);
+            tx.success();
+        }
+
+        try (Transaction tx = getDatabase().beginTx()) {
+            assertEquals(1L, getDatabase().execute("MATCH (t:Tag {value: 'John'}) RETURN count(t) AS c").next().get("c"));
+            assertEquals(2L, getDatabase().execute("MATCH (:Sentence)-[:HAS_TAG]->(t:Tag {value: 'Rome'}) RETURN count(*) AS c").next().get("c"));
+            assertEquals(2L, getDatabase().execute("MATCH (:TagOccurrence)-[:TAG_OCCURRENCE_TAG]->(t:Tag {value: 'John'}) RETURN count(*) AS c").next().get("c"));
+            tx.success();
+        }
+    }
+
+    @Test
+    public void testTextAnnotatedInChunksIsPersistedWithGlobalNumbersAndOffsets() {
+        String text = "hello my name is John.\n\nI am working for IBM.\n\nI live in Italy";
+        Map<String, Object> request = new HashMap<>();
+        request.put("text", text);
+        request.put("id", "chunked");
+        request.put("textProcessor", StubTextProcessor.class.getName());
+        request.put("pipeline", TextProcessor.DEFAULT_PIPELINE);
+        request.put("checkLanguage", false);
+        request.put("chunkSize", 25);
+        manager.annotateTextAndPersist(AnnotationRequest.fromMap(request));
+
+        TestNLPGraph tester = new TestNLPGraph(getDatabase());
+        tester.assertSentenceNodesCount(3);
+        try (Transaction tx = getDatabase().beginTx()) {
+            assertEquals(2L, getDatabase().execute("MATCH (:AnnotatedText {id: 'chunked'})-[:FIRST_SENTENCE]->(:Sentence {id: 'chunked_0'})-[:NEXT_SENTENCE*]->(s) RETURN count(s) AS c").next().get("c"));
+            Map<String, Object> ibm = getDatabase().execute("MATCH (:Sentence {id: 'chunked_1'})-[:SENTENCE_TAG_OCCURRENCE]->(o:TagOccurrence {value: 'IBM'}) RETURN o.startPosition AS start").next();
+            assertEquals(text.indexOf("IBM"), ibm.get("start"));
+            assertNotNull(getDatabase().execute("MATCH (n:AnnotatedText {id: 'chunked'}) RETURN n.hash AS hash").next().get("hash"));
+            tx.success();
+        }
+    }
+
+    @Test
+    public void testTextAnnotatedInParallelIsMergedWithGlobalOffsets() {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 3; ++i) {
+            if (i > 0) {
+                text.append("\n\n");
+            }
+            text.append("Paragraph").append(i);
+            for (int j = 0; j < 100; ++j) {
+                text.append(" lorem ipsum");
+            }
+            text.append(".");
+        }
+        try (Transaction tx = getDatabase().beginTx()) {
+            AnnotatedText annotatedText = manager.annotateTextInParallel(text.toString(), StubTextProcessor.class.getName(), TextProcessor.DEFAULT_PIPELINE, false);
+            List<Sentence> sentences = annotatedText.getSentencesSorted();
+            assertEquals(3, sentences.size());
+            for (int i = 0; i < 3; ++i) {
+                assertEquals(i, sentences.get(i).getSentenceNumber());
+                int firstBegin = Collections.min(sentences.get(i).getTagOccurrences().keySet());
+                assertEquals(text.indexOf("Paragraph" + i), firstBegin);
+            }
+            tx.success();
+        }
+    }
 
     private void clearDatabase() {
         try (Transaction tx = getDatabase().beginTx()) {
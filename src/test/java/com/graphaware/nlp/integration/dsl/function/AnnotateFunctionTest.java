@@ -17,6 +17,9 @@ import org.neo4j.kernel.internal.GraphDatabaseAPI;
 import java.util.HashMap;
 import java.util.Map;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
 public class AnnotateFunctionTest extends GraphAwareIntegrationTest {
 
     @Before
@@ -48,4 +51,26 @@ public class AnnotateFunctionTest extends GraphAwareIntegrationTest {
             tx.success();
         }
     }
+
+    @Test
+    public void testRepeatedAnnotationsAreServedFromCache() {
+        Map<String, Object> parameters = new HashMap<>();
+        parameters.put("name", "tokenizer");
+        parameters.put("textProcessor", "com.graphaware.nlp.stub.StubTextProcessor");
+
+        Map<String, Object> p = new HashMap<>();
+        p.put("text", "New York is in the European Union.");
+        p.put("params", parameters);
+
+        try (Transaction tx = getDatabase().beginTx()) {
+            Map<String, Object> first = getDatabase().execute("RETURN ga.nlp.processor.annotate({text}, {params}) AS annotated", p).next();
+            Map<String, Object> second = getDatabase().execute("RETURN ga.nlp.processor.annotate({text}, {params}) AS annotated", p).next();
+            assertEquals(first.get("annotated"), second.get("annotated"));
+
+            Map<String, Object> stats = new HashMap<>();
+            getDatabase().execute("CALL ga.nlp.processor.annotate.cache.stats()").forEachRemaining(row -> stats.put((String) row.get("key"), row.get("value")));
+            assertTrue((Long) stats.get("hitCount") >= 1L);
+            tx.success();
+        }
+    }
 }
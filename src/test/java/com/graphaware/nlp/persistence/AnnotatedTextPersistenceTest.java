@@ -2,15 +2,31 @@ package com.graphaware.nlp.persistence;
 
 import com.graphaware.nlp.NLPIntegrationTest;
 import com.graphaware.nlp.domain.AnnotatedText;
+import com.graphaware.nlp.domain.Phrase;
 import com.graphaware.nlp.domain.Sentence;
 import com.graphaware.nlp.domain.Tag;
+import com.graphaware.nlp.domain.TypedDependency;
+import com.graphaware.nlp.dsl.request.PipelineSpecification;
+import com.graphaware.nlp.persistence.TagMerger;
+import com.graphaware.nlp.persistence.persisters.AnnotatedTextPersister;
+import com.graphaware.nlp.persistence.persisters.TagPersister;
+import com.graphaware.nlp.stub.StubTextProcessor;
 import com.graphaware.nlp.util.TestNLPGraph;
 import org.junit.Test;
+import org.neo4j.graphdb.Label;
 import org.neo4j.graphdb.Node;
 import org.neo4j.graphdb.Transaction;
 
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.junit.Assert.*;
@@ -37,6 +53,86 @@ public class AnnotatedTextPersistenceTest extends NLPIntegrationTest {
         test.assertTagWithValueHasPos("reports", "NNS");
     }
 
+    @Test
+    public void testUnchangedTagsAreNotWrittenAndNewPOSAreMergedInBackground() {
+        clearDb();
+        TestNLPGraph test = new TestNLPGraph(getDatabase());
+        String[] texts = {"reports are good", "reports are bad", "reports are late"};
+        String[] pos = {"VGB", "VGB", "NNS"};
+        for (int i = 0; i < texts.length; ++i) {
+            if (i == 2) {
+                getNLPManager().getConfiguration().update("SETTING_asyncTagMerge", true);
+            }
+            try (Transaction tx = getDatabase().beginTx()) {
+                getNLPManager().getPersister(AnnotatedText.class).persist(createAnnotatedTextFor(texts[i], "reports", pos[i]), "merge-" + i, String.valueOf(i + 1));
+                tx.success();
+            }
+        }
+        getNLPManager().getConfiguration().removeSettingValue("asyncTagMerge");
+        executeInTransaction("MATCH (t:Tag {value: 'reports'}) RETURN t.lastTxId AS txId", (result -> {
+            assertEquals("1", result.next().get("txId"));
+        }));
+
+        TagMerger tagMerger = ((TagPersister) getNLPManager().getPersister(Tag.class)).getTagMerger();
+        tagMerger.flush();
+        assertEquals(0, tagMerger.getPendingCount());
+        test.assertTagWithValueHasPos("reports", "VGB");
+        test.assertTagWithValueHasPos("reports", "NNS");
+    }
+
+    @Test
+    public void testTagChangesOfARolledBackTransactionAreNotMerged() {
+        clearDb();
+        try (Transaction tx = getDatabase().beginTx()) {
+            getNLPManager().getPersister(AnnotatedText.class).persist(createAnnotatedTextFor("reports are good", "reports", "VGB"), "rollback-0", "1");
+            tx.success();
+        }
+        getNLPManager().getConfiguration().update("SETTING_asyncTagMerge", true);
+        try (Transaction tx = getDatabase().beginTx()) {
+            getNLPManager().getPersister(AnnotatedText.class).persist(createAnnotatedTextFor("reports are late", "reports", "NNS"), "rollback-1", "2");
+            tx.failure();
+        }
+        getNLPManager().getConfiguration().removeSettingValue("asyncTagMerge");
+        TagMerger tagMerger = ((TagPersister) getNLPManager().getPersister(Tag.class)).getTagMerger();
+        assertEquals(0, tagMerger.getPendingCount());
+        tagMerger.flush();
+        executeInTransaction("MATCH (t:Tag {value: 'reports'}) RETURN 'NNS' IN t.pos AS merged", (result -> {
+            assertFalse((Boolean) result.next().get("merged"));
+        }));
+    }
+
+    @Test
+    public void testConcurrentDocumentsCreatingTheSameTagShareOneNode() throws Exception {
+        clearDb();
+        getNLPManager().getSchemaManager().ensureSchemaAsync().get();
+        try (Transaction tx = getDatabase().beginTx()) {
+            getDatabase().schema().awaitIndexesOnline(10, TimeUnit.SECONDS);
+            tx.success();
+        }
+        CountDownLatch created = new CountDownLatch(1);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        Future<?> first = executor.submit(() -> {
+            try (Transaction tx = getDatabase().beginTx()) {
+                getNLPManager().getPersister(AnnotatedText.class).persist(createAnnotatedTextFor("shared tag", "shared", "NN"), "concurrent-0", "1");
+                created.countDown();
+                Thread.sleep(200);
+                tx.success();
+            }
+
+            return null;
+        });
+        created.await();
+        try (Transaction tx = getDatabase().beginTx()) {
+            getNLPManager().getPersister(AnnotatedText.class).persist(createAnnotatedTextFor("shared tag", "shared", "NN"), "concurrent-1", "2");
+            tx.success();
+        }
+        first.get();
+        executor.shutdown();
+        executeInTransaction("MATCH (t:Tag {value: 'shared'}) RETURN count(t) AS c", (result -> {
+            assertEquals(1L, result.next().get("c"));
+        }));
+    }
+
     @Test
     public void testAnnotatedTextWithSameTagInSameTextGotDifferentPOS() {
         clearDb();
@@ -52,6 +148,33 @@ public class AnnotatedTextPersistenceTest extends NLPIntegrationTest {
         test.assertTagWithValueHasNE("cool", "NER_Cool1");
     }
 
+    @Test
+    public void testCachedTagNodesAreReusedAndDeletedOnesRecreated() {
+        clearDb();
+        String text = "The discipline of preparing and peer reviewing formal engineering reports leads to a high degree of accuracy and technical rigor.";
+        TestNLPGraph test = new TestNLPGraph(getDatabase());
+        try (Transaction tx = getDatabase().beginTx()) {
+            getNLPManager().getPersister(AnnotatedText.class).persist(createAnnotatedTextFor(text, "reports", "VGB"), "cache-a", "1");
+            tx.success();
+        }
+        long hits = getNLPManager().getNodeIdCache().stats().hitCount();
+        try (Transaction tx = getDatabase().beginTx()) {
+            getNLPManager().getPersister(AnnotatedText.class).persist(createAnnotatedTextFor(text, "reports", "NNS"), "cache-b", "2");
+            tx.success();
+        }
+        assertTrue(getNLPManager().getNodeIdCache().stats().hitCount() > hits);
+        test.assertTagWithValueHasPos("reports", "VGB");
+        test.assertTagWithValueHasPos("reports", "NNS");
+
+        clearDb();
+        try (Transaction tx = getDatabase().beginTx()) {
+            getNLPManager().getPersister(AnnotatedText.class).persist(createAnnotatedTextFor(text, "reports", "NNS"), "cache-c", "3");
+            tx.success();
+        }
+        test.assertTagWithValueExist("reports");
+        test.assertTagWithValueHasPos("reports", "NNS");
+    }
+
     @Test
     public void testTagOccurrenceGetAValue() {
         clearDb();
@@ -102,6 +225,200 @@ public class AnnotatedTextPersistenceTest extends NLPIntegrationTest {
         }));
     }
 
+    @Test
+    public void testTypedDependenciesAreStoredBetweenTheTokenOccurrences() {
+        clearDb();
+        AnnotatedText annotatedText = new AnnotatedText();
+        annotatedText.setText("John eats apples");
+        Sentence sentence = new Sentence("John eats apples", 0);
+        int begin = 0;
+        int index = 1;
+        for (String token : "John eats apples".split(" ")) {
+            Tag tag = new Tag(token, "en");
+            sentence.addTagOccurrence(begin, begin + token.length(), token, sentence.addTag(tag), Collections.singletonList(token + "-" + index));
+            begin += token.length() + 1;
+            index++;
+        }
+        sentence.addTypedDependency(new TypedDependency("eats-2", "John-1", "nsubj", null));
+        sentence.addTypedDependency(new TypedDependency("eats-2", "apples-3", "dobj", null));
+        sentence.addTypedDependency(new TypedDependency("eats-2", "missing-4", "dobj", null));
+        annotatedText.addSentence(sentence);
+        try (Transaction tx = getDatabase().beginTx()) {
+            getNLPManager().getPersister(AnnotatedText.class).persist(annotatedText, "dependencies", "1");
+            tx.success();
+        }
+        executeInTransaction("MATCH (s:TagOccurrence)-[r]->(t:TagOccurrence) RETURN s.value AS source, type(r) AS type, t.value AS target ORDER BY type", (result -> {
+            Map<String, Object> row = result.next();
+            assertEquals("eats", row.get("source"));
+            assertEquals("DOBJ", row.get("type"));
+            assertEquals("apples", row.get("target"));
+            row = result.next();
+            assertEquals("NSUBJ", row.get("type"));
+            assertEquals("John", row.get("target"));
+            assertFalse(result.hasNext());
+        }));
+    }
+
+    @Test
+    public void testPackedOccurrencesAreStoredOnTheSentence() {
+        clearDb();
+        getNLPManager().getConfiguration().update("SETTING_packedOccurrences", true);
+        AnnotatedText annotatedText = new AnnotatedText();
+        annotatedText.setText("John eats apples");
+        Sentence sentence = new Sentence("John eats apples", 0);
+        int begin = 0;
+        int index = 1;
+        for (String token : "John eats apples".split(" ")) {
+            Tag tag = new Tag(token, "en");
+            if (token.equals("eats")) {
+                tag.setPos(Arrays.asList("VBZ", "VB"));
+                tag.setNe(Collections.singletonList("PERSON"));
+            }
+            sentence.addTagOccurrence(begin, begin + token.length(), token, sentence.addTag(tag), Collections.singletonList(token + "-" + index));
+            begin += token.length() + 1;
+            index++;
+        }
+        sentence.addTypedDependency(new TypedDependency("eats-2", "apples-3", "dobj", null));
+        annotatedText.addSentence(sentence);
+        try (Transaction tx = getDatabase().beginTx()) {
+            getNLPManager().getPersister(AnnotatedText.class).persist(annotatedText, "packed", "1");
+            tx.success();
+        }
+        getNLPManager().getConfiguration().removeSettingValue("packedOccurrences");
+        executeInTransaction("MATCH (n:TagOccurrence) RETURN count(n) AS c", (result -> {
+            assertEquals(0L, result.next().get("c"));
+        }));
+        executeInTransaction("MATCH (s:Sentence) RETURN ga.nlp.sentence.occurrences(s) AS occurrences, ga.nlp.sentence.dependencies(s) AS dependencies", (result -> {
+            Map<String, Object> row = result.next();
+            List<Map<String, Object>> occurrences = (List<Map<String, Object>>) row.get("occurrences");
+            assertEquals(3, occurrences.size());
+            assertEquals("eats", occurrences.get(1).get("value"));
+            assertEquals(5, ((Number) occurrences.get(1).get("begin")).intValue());
+            assertEquals("eats", ((Node) occurrences.get(1).get("tag")).getProperty("value"));
+            assertEquals(Arrays.asList("VBZ", "VB"), occurrences.get(1).get("pos"));
+            assertEquals(Collections.singletonList("PERSON"), occurrences.get(1).get("ne"));
+            assertEquals(Collections.emptyList(), occurrences.get(0).get("pos"));
+            List<Map<String, Object>> dependencies = (List<Map<String, Object>>) row.get("dependencies");
+            assertEquals(1, dependencies.size());
+            assertEquals(1, ((Number) dependencies.get(0).get("source")).intValue());
+            assertEquals(2, ((Number) dependencies.get(0).get("target")).intValue());
+            assertEquals("DOBJ", dependencies.get(0).get("type"));
+        }));
+    }
+
+    @Test
+    public void testSentenceTextIsStoredAsOffsetsIntoTheCompressedDocumentText() {
+        clearDb();
+        getNLPManager().getConfiguration().update("SETTING_sentenceTextOffsets", true);
+        getNLPManager().getConfiguration().update("SETTING_compressText", true);
+        String text = "John eats apples. Mary eats pears";
+        try (Transaction tx = getDatabase().beginTx()) {
+            getNLPManager().getPersister(AnnotatedText.class).persist(createAnnotatedTextFor(text, "John", "NNP"), "offsets", "1");
+            tx.success();
+        }
+        getNLPManager().getConfiguration().removeSettingValue("sentenceTextOffsets");
+        getNLPManager().getConfiguration().removeSettingValue("compressText");
+        executeInTransaction("MATCH (a:AnnotatedText) RETURN exists(a.text) AS text, exists(a.compressedText) AS compressed", (result -> {
+            Map<String, Object> row = result.next();
+            assertFalse((Boolean) row.get("text"));
+            assertTrue((Boolean) row.get("compressed"));
+        }));
+        executeInTransaction("MATCH (s:Sentence) RETURN s.text AS stored, s.textBegin AS begin, ga.nlp.sentence.text(s) AS text ORDER BY s.sentenceNumber", (result -> {
+            Map<String, Object> row = result.next();
+            assertNull(row.get("stored"));
+            assertEquals(0L, ((Number) row.get("begin")).longValue());
+            assertEquals("John eats apples", row.get("text"));
+            row = result.next();
+            assertEquals(17L, ((Number) row.get("begin")).longValue());
+            assertEquals(" Mary eats pears", row.get("text"));
+        }));
+    }
+
+    @Test
+    public void testStoredTextCanBeReadLazily() {
+        clearDb();
+        try (Transaction tx = getDatabase().beginTx()) {
+            getNLPManager().getPersister(AnnotatedText.class).persist(createAnnotatedTextFor("John eats apples. Mary eats pears", "John", "NNP"), "lazy", "1");
+            tx.success();
+        }
+        try (Transaction tx = getDatabase().beginTx()) {
+            Node node = getDatabase().findNode(Label.label("AnnotatedText"), "id", "lazy");
+            LazyAnnotatedText annotatedText = ((AnnotatedTextPersister) getNLPManager().getPersister(AnnotatedText.class)).lazyFromNode(node);
+            Iterator<Sentence> iterator = annotatedText.sentenceIterator();
+            assertEquals("John eats apples", iterator.next().getSentence());
+            assertEquals(" Mary eats pears", iterator.next().getSentence());
+            assertFalse(iterator.hasNext());
+
+            List<Sentence> sentences = annotatedText.getSentences();
+            assertEquals(2, sentences.size());
+            assertEquals(1, sentences.get(1).getSentenceNumber());
+            assertEquals(3, sentences.get(0).getTags().size());
+            assertEquals("NNP", sentences.get(0).getTag("John").getPos().get(0));
+            assertEquals(3, sentences.get(0).getTagOccurrences().get(0).size());
+            tx.success();
+        }
+    }
+
+    @Test
+    public void testOnlyTheLayersOfThePipelinePersistenceProfileAreStored() {
+        clearDb();
+        PipelineSpecification pipelineSpecification = new PipelineSpecification("tags-only", StubTextProcessor.class.getName());
+        pipelineSpecification.setPersistedLayers(Arrays.asList("tags", "occurrences"));
+        getNLPManager().getConfiguration().storeCustomPipeline(pipelineSpecification);
+        AnnotatedText annotatedText = new AnnotatedText();
+        annotatedText.setText("John eats apples");
+        annotatedText.setPipeline("tags-only");
+        Sentence sentence = new Sentence("John eats apples", 0);
+        int begin = 0;
+        int index = 1;
+        for (String token : "John eats apples".split(" ")) {
+            Tag tag = new Tag(token, "en");
+            sentence.addTagOccurrence(begin, begin + token.length(), token, sentence.addTag(tag), Collections.singletonList(token + "-" + index));
+            begin += token.length() + 1;
+            index++;
+        }
+        sentence.addTypedDependency(new TypedDependency("eats-2", "apples-3", "dobj", null));
+        sentence.addPhraseOccurrence(5, 16, new Phrase("eats apples"));
+        annotatedText.addSentence(sentence);
+        try (Transaction tx = getDatabase().beginTx()) {
+            getNLPManager().getPersister(AnnotatedText.class).persist(annotatedText, "profile", "1");
+            tx.success();
+        }
+        executeInTransaction("MATCH (s:Sentence) RETURN size((s)-[:HAS_TAG]->()) AS tags, size((s)-[:SENTENCE_TAG_OCCURRENCE]->()) AS occurrences, "
+                + "size((:TagOccurrence)-[:DOBJ]->()) AS dependencies, size((s)-[:HAS_PHRASE]->()) AS phrases", (result -> {
+            Map<String, Object> row = result.next();
+            assertEquals(3L, row.get("tags"));
+            assertEquals(3L, row.get("occurrences"));
+            assertEquals(0L, row.get("dependencies"));
+            assertEquals(0L, row.get("phrases"));
+        }));
+    }
+
+    @Test
+    public void testTagParentRelationIsMergedAndItsWeightUpdated() {
+        clearDb();
+        for (float weight : new float[]{0.5f, 0.8f}) {
+            AnnotatedText annotatedText = new AnnotatedText();
+            annotatedText.setText("Rome");
+            Sentence sentence = new Sentence("Rome", 0);
+            Tag tag = new Tag("rome", "en");
+            tag.addParent("IsA", new Tag("city", "en"), weight, "conceptnet5");
+            sentence.addTagOccurrence(0, 4, "Rome", sentence.addTag(tag));
+            annotatedText.addSentence(sentence);
+            try (Transaction tx = getDatabase().beginTx()) {
+                getNLPManager().getPersister(AnnotatedText.class).persist(annotatedText, "parents", String.valueOf(weight));
+                tx.success();
+            }
+        }
+        executeInTransaction("MATCH (:Tag {value: 'rome'})-[r:IS_RELATED_TO]->(:Tag {value: 'city'}) RETURN r.type AS type, r.weight AS weight, r.source AS source", (result -> {
+            Map<String, Object> row = result.next();
+            assertEquals("IsA", row.get("type"));
+            assertEquals(0.8d, (Double) row.get("weight"), 0.0001d);
+            assertEquals("conceptnet5", row.get("source"));
+            assertFalse(result.hasNext());
+        }));
+    }
+
     private AnnotatedText createAnnotatedTextFor(String text, String expectedTokenForPOS, String expectedPOS) {
         AnnotatedText annotatedText = new AnnotatedText();
         annotatedText.setText(text);
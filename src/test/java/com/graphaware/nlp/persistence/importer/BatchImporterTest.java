@@ -0,0 +1,51 @@
+package com.graphaware.nlp.persistence.importer;
+
+import com.graphaware.nlp.configuration.DynamicConfiguration;
+import com.graphaware.nlp.stub.StubTextProcessor;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.graphdb.factory.GraphDatabaseFactory;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class BatchImporterTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testDocumentsAreImportedWithDeduplicatedTagsAndMappedLabels() throws Exception {
+        File input = folder.newFolder("input");
+        Files.write(new File(input, "doc1.txt").toPath(), "hello my name is John. John is here".getBytes(StandardCharsets.UTF_8));
+        Files.write(new File(input, "doc2.txt").toPath(), "hello John".getBytes(StandardCharsets.UTF_8));
+        File store = new File(folder.getRoot(), "graph.db");
+        DynamicConfiguration configuration = new DynamicConfiguration(Collections.singletonMap("LABEL_Tag", "Token"));
+        try (BatchImporter importer = new BatchImporter(store, configuration, StubTextProcessor.class.getName(), "tokenizer", "en", 2)) {
+            assertEquals(2, importer.importDirectory(input.toPath()));
+            assertEquals(0, importer.getFailures());
+        }
+
+        GraphDatabaseService database = new GraphDatabaseFactory().newEmbeddedDatabase(store);
+        try (Transaction tx = database.beginTx()) {
+            Map<String, Object> row = database.execute("MATCH (a:AnnotatedText) WITH count(a) AS texts "
+                    + "MATCH (t:Token {value: 'John'}) WITH texts, count(t) AS john, head(collect(t)) AS tag "
+                    + "RETURN texts, john, size((tag)<-[:TAG_OCCURRENCE_TAG]-(:TagOccurrence)) AS occurrences, tag.ne AS ne").next();
+            assertEquals(2L, row.get("texts"));
+            assertEquals(1L, row.get("john"));
+            assertEquals(3L, row.get("occurrences"));
+            assertArrayEquals(new String[]{"test"}, (String[]) row.get("ne"));
+            tx.success();
+        } finally {
+            database.shutdown();
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package com.graphaware.nlp.processor;
+
+import com.graphaware.nlp.dsl.result.PipelineStats;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class PipelineExecutorUnitTest {
+
+    @Test
+    public void testFailedAnnotationsAreNotCountedAsCompleted() {
+        PipelineExecutor executor = new PipelineExecutor("processor", "pipeline", 1, 1, 1000L);
+        assertEquals("done", executor.execute(() -> "done"));
+        try {
+            executor.execute(() -> {
+                throw new IllegalStateException("failure");
+            });
+            fail("The failure should be propagated");
+        } catch (IllegalStateException e) {
+            assertEquals("failure", e.getMessage());
+        }
+        PipelineStats stats = executor.getStats();
+        executor.shutdown();
+
+        assertEquals(2, stats.submitted);
+        assertEquals(1, stats.completed);
+        assertEquals(1, stats.failed);
+    }
+}
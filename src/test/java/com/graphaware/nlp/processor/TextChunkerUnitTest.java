@@ -0,0 +1,33 @@
+package com.graphaware.nlp.processor;
+
+import com.graphaware.nlp.processor.chunk.TextChunk;
+import com.graphaware.nlp.processor.chunk.TextChunker;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class TextChunkerUnitTest {
+
+    @Test
+    public void testTextIsSplitAtParagraphAndSentenceBoundaries() {
+        String text = "First para. Second sentence.\n\nSecond paragraph here! Another one? Yes.\n\n\nThird.";
+        List<TextChunk> chunks = TextChunker.split(text, 30);
+
+        assertEquals(3, chunks.size());
+        assertEquals("First para. Second sentence.", chunks.get(0).getText());
+        assertEquals("Second paragraph here!", chunks.get(1).getText());
+        for (TextChunk chunk : chunks) {
+            assertEquals(chunk.getText(), text.substring(chunk.getOffset(), chunk.getOffset() + chunk.getText().length()));
+        }
+    }
+
+    @Test
+    public void testShortTextIsKeptInOneChunk() {
+        List<TextChunk> chunks = TextChunker.split("hello my name is Frank", 1000);
+
+        assertEquals(1, chunks.size());
+        assertEquals(0, chunks.get(0).getOffset());
+    }
+}
@@ -0,0 +1,34 @@
+package com.graphaware.nlp.processor;
+
+import com.graphaware.nlp.stub.StubTextProcessor;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class TextProcessorPoolUnitTest {
+
+    @Test
+    public void testClosedPoolDropsItsInstances() {
+        TextProcessorPool pool = new TextProcessorPool(StubTextProcessor.class, "tokenizer", null, 2, 1000L);
+        TextProcessor idle = pool.lease();
+        TextProcessor leased = pool.lease();
+        pool.release(idle);
+        assertEquals(2, pool.getCreated());
+
+        pool.close();
+        assertEquals(1, pool.getCreated());
+        assertFalse(idle.checkPipeline("tokenizer"));
+        assertNull(pool.lease());
+
+        pool.release(leased);
+        assertEquals(0, pool.getCreated());
+        assertFalse(leased.checkPipeline("tokenizer"));
+    }
+
+    @Test
+    public void testUnsupportedPipelineFallsBackToTheSharedInstance() {
+        TextProcessorPool pool = new TextProcessorPool(StubTextProcessor.class, "unknown", null, 2, 1000L);
+        assertNull(pool.lease());
+        assertEquals(0, pool.getCreated());
+    }
+}
@@ -0,0 +1,36 @@
+package com.graphaware.nlp.util;
+
+import com.graphaware.nlp.annotation.NLPModuleExtension;
+import com.graphaware.nlp.annotation.NLPTextProcessor;
+import com.graphaware.nlp.annotation.processing.ExtensionIndexProcessor;
+import com.graphaware.nlp.ml.pagerank.PageRankProcessor;
+import com.graphaware.nlp.stub.StubTextProcessor;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class ServiceLoaderTest {
+
+    @Test
+    public void testExtensionIndexIsGeneratedAtCompileTime() {
+        assertNotNull(getClass().getClassLoader().getResource(ExtensionIndexProcessor.INDEX_LOCATION + NLPTextProcessor.class.getName()));
+        assertNotNull(getClass().getClassLoader().getResource(ExtensionIndexProcessor.INDEX_LOCATION + NLPModuleExtension.class.getName()));
+    }
+
+    @Test
+    public void testAnnotatedClassesAreLoadedInNameOrder() {
+        Map<String, Class<Object>> processors = ServiceLoader.loadClass(NLPTextProcessor.class);
+        assertTrue(processors.containsKey(StubTextProcessor.class.getName()));
+
+        Map<String, Class<Object>> extensions = ServiceLoader.loadClass(NLPModuleExtension.class);
+        assertTrue(extensions.containsKey(PageRankProcessor.class.getName()));
+        List<String> names = new ArrayList<>(extensions.keySet());
+        List<String> sorted = new ArrayList<>(names);
+        sorted.sort(String::compareTo);
+        assertEquals(sorted, names);
+    }
+}